@@ -0,0 +1,135 @@
+package me.lucievol.forbiddenblocks.gametest;
+
+import me.lucievol.forbiddenblocks.InteractionPipeline;
+import me.lucievol.forbiddenblocks.config.ForbiddenBlocksConfig;
+import me.lucievol.forbiddenblocks.config.WorldConfig;
+import net.fabricmc.fabric.api.client.gametest.v1.FabricClientGameTest;
+import net.fabricmc.fabric.api.client.gametest.v1.context.ClientGameTestContext;
+import net.fabricmc.fabric.api.client.gametest.v1.context.TestSingleplayerContext;
+import net.minecraft.block.Blocks;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.util.ActionResult;
+import net.minecraft.util.Hand;
+import net.minecraft.util.hit.BlockHitResult;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3d;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+
+/**
+ * Times a forbidden click end to end through ClientPlayerInteractionManager.interactBlock,
+ * once decided by the mod's interactBlock mixin and once by the UseBlockCallback fallback
+ * alone, with the mixin's decision switched off through {@link HookSwitches}.
+ *
+ * The mixin cancels at the head of interactBlock. Without it, the click first goes through
+ * vanilla's selected slot sync and world border check and Fabric's dispatch to every
+ * UseBlockCallback listener before the fallback cancels it; that is the work the mixin
+ * skips. A cancelled click sends no packet on either path, which the test checks on the
+ * server. The hand swing is decided by the caller of interactBlock and skipped on FAIL by
+ * both paths, so it is not part of either number.
+ *
+ * Chat messages are turned off and the mod's logger raised to WARN while timing, so the
+ * numbers are not dominated by chat and logging. Each click starts a new pipeline tick, as
+ * in play, so neither path reuses a cached decision. The best of several rounds counts.
+ * Results are logged; with {@code -Pbenchmark} the test also fails if the mixin path is
+ * slower than the fallback. Without it only the decisions themselves are checked.
+ */
+public class BlockUseHookBenchmark implements FabricClientGameTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger("forbiddenblocks");
+    // Set by -Pbenchmark, see build.gradle
+    private static final boolean BENCHMARK = Boolean.getBoolean("forbiddenblocks.benchmark");
+    private static final int ROUNDS = 5;
+    private static final int CALLS_PER_ROUND = 20_000;
+
+    // Keeps results reachable so the JIT cannot drop the calls being timed
+    private static volatile Object sink;
+
+    @Override
+    public void runTest(ClientGameTestContext context) {
+        try (TestSingleplayerContext singleplayer = context.worldBuilder().create()) {
+            singleplayer.getClientWorld().waitForChunksRender();
+            singleplayer.getServer().runCommand("item replace entity @p weapon.mainhand with minecraft:torch 64");
+            BlockPos feet = context.computeOnClient(client -> client.player.getBlockPos());
+            context.waitTicks(5);
+            context.runOnClient(client -> WorldConfig.getCurrentWorld().toggleItem(new ItemStack(Items.TORCH)));
+
+            double[] nanos = context.computeOnClient(BlockUseHookBenchmark::compare);
+            context.waitTicks(5);
+            boolean placed = singleplayer.getServer().computeOnServer(server ->
+                    server.getOverworld().getBlockState(feet).isOf(Blocks.TORCH));
+            context.runOnClient(client -> WorldConfig.getCurrentWorld().toggleItem(new ItemStack(Items.TORCH)));
+
+            LOGGER.info(String.format(Locale.ROOT, "Forbidden click through interactBlock: mixin %.0f ns, "
+                    + "fallback callback %.0f ns (%.2fx)", nanos[0], nanos[1], nanos[1] / nanos[0]));
+            if (placed) {
+                throw new AssertionError("A forbidden torch was placed at " + feet);
+            }
+            if (BENCHMARK && nanos[0] > nanos[1]) {
+                throw new AssertionError(String.format(Locale.ROOT,
+                        "Mixin path took %.0f ns per click, fallback %.0f ns", nanos[0], nanos[1]));
+            }
+        }
+    }
+
+    /**
+     * Times both paths with messages and info logging off, restoring both afterwards.
+     *
+     * @return Nanoseconds per click for the mixin path, then the fallback path
+     */
+    private static double[] compare(MinecraftClient client) {
+        BlockPos ground = client.player.getBlockPos().down();
+        BlockHitResult hit = new BlockHitResult(Vec3d.ofCenter(ground).add(0, 0.5, 0), Direction.UP, ground, false);
+        ForbiddenBlocksConfig config = ForbiddenBlocksConfig.get();
+        boolean showMessages = config.shouldShowMessages();
+        Level logLevel = LogManager.getLogger("forbiddenblocks").getLevel();
+        if (showMessages) {
+            config.toggleMessages();
+        }
+        Configurator.setLevel("forbiddenblocks", Level.WARN);
+        try {
+            HookSwitches.skipMixinDecision = false;
+            double mixinNanos = nanosPerClick(client, hit, "mixin");
+            HookSwitches.skipMixinDecision = true;
+            double fallbackNanos = nanosPerClick(client, hit, "fallback");
+            return new double[]{mixinNanos, fallbackNanos};
+        } finally {
+            HookSwitches.skipMixinDecision = false;
+            Configurator.setLevel("forbiddenblocks", logLevel);
+            if (showMessages) {
+                config.toggleMessages();
+            }
+        }
+    }
+
+    private static double nanosPerClick(MinecraftClient client, BlockHitResult hit, String path) {
+        ActionResult result = click(client, hit);
+        if (result != ActionResult.FAIL) {
+            throw new AssertionError(path + " path returned " + result + " for a forbidden torch, expected FAIL");
+        }
+        for (int i = 0; i < CALLS_PER_ROUND; i++) {
+            sink = click(client, hit);
+        }
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLS_PER_ROUND; i++) {
+                sink = click(client, hit);
+            }
+            best = Math.min(best, (System.nanoTime() - start) / (double) CALLS_PER_ROUND);
+        }
+        return best;
+    }
+
+    private static ActionResult click(MinecraftClient client, BlockHitResult hit) {
+        InteractionPipeline.onTick();
+        return client.interactionManager.interactBlock(client.player, Hand.MAIN_HAND, hit);
+    }
+}
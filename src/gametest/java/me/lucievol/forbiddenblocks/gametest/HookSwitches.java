@@ -0,0 +1,26 @@
+package me.lucievol.forbiddenblocks.gametest;
+
+/**
+ * Switches that game tests use to take parts of the mod out of the click path, applied by
+ * the game test mod's own mixin on {@link me.lucievol.forbiddenblocks.InteractionPipeline}.
+ * They exist only in the game test source set, so the shipped mod cannot be switched off.
+ *
+ * Written on the client thread. {@link #bypassAll} is also read by the Fabric callbacks on
+ * the integrated server's thread, so it is volatile.
+ */
+public final class HookSwitches {
+    /**
+     * Makes the interactBlock mixin's decision pass, leaving block use to the
+     * UseBlockCallback fallback.
+     */
+    public static boolean skipMixinDecision;
+
+    /**
+     * Makes every pipeline hook pass without evaluating the held item, so clicks cost what
+     * they would without the mod apart from the empty hook calls themselves.
+     */
+    public static volatile boolean bypassAll;
+
+    private HookSwitches() {
+    }
+}
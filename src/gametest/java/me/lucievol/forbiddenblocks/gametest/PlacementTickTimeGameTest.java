@@ -0,0 +1,230 @@
+package me.lucievol.forbiddenblocks.gametest;
+
+import me.lucievol.forbiddenblocks.config.WorldConfig;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.gametest.v1.FabricClientGameTest;
+import net.fabricmc.fabric.api.client.gametest.v1.context.ClientGameTestContext;
+import net.fabricmc.fabric.api.client.gametest.v1.context.TestServerContext;
+import net.fabricmc.fabric.api.client.gametest.v1.context.TestSingleplayerContext;
+import net.minecraft.block.Blocks;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.passive.CowEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.util.Hand;
+import net.minecraft.util.hit.BlockHitResult;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3d;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures client tick time under sustained right-clicking in a generated world, with the
+ * mod bypassed, without rules and with a forbidden item.
+ *
+ * The player sneaks next to a crafting table, a ripe sweet berry bush, open ground and a
+ * cow, holding torches in the main hand and sticks in the off hand. Every tick, after the
+ * game's own work, a burst of block and entity clicks goes through the real interaction
+ * manager, so the mixin, the Fabric callbacks and vanilla handling all run as they would
+ * for a player. Ticks are timed from START_CLIENT_TICK to the end of the burst.
+ *
+ * The mod stays loaded in every pass. The first pass takes it out of the click path with
+ * {@link HookSwitches#bypassAll}, so every hook passes before looking at the item; only the
+ * hook calls themselves remain. The second pass runs the mod without rules, where every
+ * hook returns at its item check. The third forbids the held torch. Mean and p99 tick time
+ * of each pass are logged.
+ *
+ * Sneaking with an item in hand places it against the crafting table instead of opening
+ * it, so the crafting table click is a placement attempt the rules must stop too. The test
+ * fails if the bypassed and rule-free passes place no torch on open ground, or if the
+ * rules let a torch through on open ground or on top of the crafting table.
+ *
+ * Wall-clock limits are only enforced with {@code gradlew runClientGameTest -Pbenchmark},
+ * like the timed JUnit benchmarks; that run also uses longer passes and fails if the rules
+ * raise p99 over the bypassed pass by more than the budget. A plain build only checks
+ * placement and logs timings.
+ *
+ * Key Features:
+ * - Real world, real clicks: open ground, a utility block, a harvestable crop and an entity
+ * - Warmup ticks before each pass are not counted
+ * - Checks on the server that the forbidden torch was never placed
+ */
+public class PlacementTickTimeGameTest implements FabricClientGameTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger("forbiddenblocks");
+    // Set by -Pbenchmark, see build.gradle
+    private static final boolean BENCHMARK = Boolean.getBoolean("forbiddenblocks.benchmark");
+    private static final int WARMUP_TICKS = BENCHMARK ? 100 : 10;
+    private static final int MEASURED_TICKS = BENCHMARK ? 400 : 40;
+    private static final int CLICKS_PER_TICK = 20;
+    // Allowed rise in p99 tick time from the rules, a twentieth of a 50 ms tick
+    private static final long P99_BUDGET_NANOS = 2_500_000;
+
+    // Read and written on the client thread only, by the tick listeners and runOnClient
+    private boolean running;
+    private int ticksRun;
+    private long tickStart;
+    private final long[] tickNanos = new long[MEASURED_TICKS];
+    private List<BlockHitResult> blockTargets;
+    private Entity entityTarget;
+
+    @Override
+    public void runTest(ClientGameTestContext context) {
+        // Registered in this order so the burst runs inside the timed part of the tick
+        ClientTickEvents.START_CLIENT_TICK.register(client -> tickStart = System.nanoTime());
+        ClientTickEvents.END_CLIENT_TICK.register(this::clickBurst);
+        ClientTickEvents.END_CLIENT_TICK.register(this::recordTick);
+
+        try (TestSingleplayerContext singleplayer = context.worldBuilder().create()) {
+            singleplayer.getClientWorld().waitForChunksRender();
+            TestServerContext server = singleplayer.getServer();
+            BlockPos feet = context.computeOnClient(client -> client.player.getBlockPos());
+            BlockPos placeCell = feet.east();
+            BlockPos tableTop = feet.west(2).up();
+            // Sneaking places against utility blocks instead of opening them, so no screen interrupts
+            // the clicks and the crafting table becomes a placement target
+            context.getInput().holdKey(options -> options.sneakKey);
+
+            buildScene(server, feet);
+            context.runOnClient(client -> HookSwitches.bypassAll = true);
+            context.waitTicks(20);
+            long[] bypassed;
+            try {
+                bypassed = measure(context, feet);
+            } finally {
+                context.runOnClient(client -> HookSwitches.bypassAll = false);
+            }
+            boolean placedBypassed = isTorch(server, placeCell);
+
+            buildScene(server, feet);
+            context.waitTicks(20);
+            long[] withoutRules = measure(context, feet);
+            boolean placedWithoutRules = isTorch(server, placeCell);
+
+            buildScene(server, feet);
+            context.runOnClient(client -> WorldConfig.getCurrentWorld().toggleItem(new ItemStack(Items.TORCH)));
+            context.waitTicks(20);
+            long[] withRules = measure(context, feet);
+            boolean placedWithRules = isTorch(server, placeCell);
+            boolean placedOnTableWithRules = isTorch(server, tableTop);
+            context.runOnClient(client -> WorldConfig.getCurrentWorld().toggleItem(new ItemStack(Items.TORCH)));
+
+            context.getInput().releaseKey(options -> options.sneakKey);
+            report("mod bypassed", bypassed);
+            report("no rules", withoutRules);
+            report("torch forbidden", withRules);
+
+            if (!placedBypassed || !placedWithoutRules) {
+                throw new AssertionError("Clicks " + (placedBypassed ? "without rules" : "with the mod bypassed")
+                        + " did not place a torch; the load did not reach the game");
+            }
+            if (placedWithRules) {
+                throw new AssertionError("A forbidden torch was placed at " + placeCell);
+            }
+            if (placedOnTableWithRules) {
+                throw new AssertionError("A forbidden torch was placed on the crafting table at " + tableTop
+                        + " while sneaking");
+            }
+            long rise = percentile(withRules, 99) - percentile(bypassed, 99);
+            if (BENCHMARK && rise > P99_BUDGET_NANOS) {
+                throw new AssertionError(String.format(Locale.ROOT,
+                        "Rules raised p99 tick time by %.2f ms, budget is %.2f ms", rise / 1e6, P99_BUDGET_NANOS / 1e6));
+            }
+        }
+    }
+
+    /**
+     * Places the click targets around the player and fills their hands, resetting anything
+     * an earlier pass changed.
+     */
+    private static void buildScene(TestServerContext server, BlockPos feet) {
+        server.runCommand("kill @e[type=minecraft:cow]");
+        server.runCommand(setblock(feet.down().east(), "minecraft:stone"));
+        server.runCommand(setblock(feet.east(), "minecraft:air"));
+        server.runCommand(setblock(feet.west(2), "minecraft:crafting_table"));
+        server.runCommand(setblock(feet.up().west(2), "minecraft:air"));
+        server.runCommand(setblock(feet.north(2).down(), "minecraft:grass_block"));
+        server.runCommand(setblock(feet.north(2), "minecraft:sweet_berry_bush[age=3]"));
+        BlockPos cow = feet.south(2).east(2);
+        server.runCommand(String.format(Locale.ROOT, "summon minecraft:cow %d %d %d {NoAI:1b}",
+                cow.getX(), cow.getY(), cow.getZ()));
+        server.runCommand("item replace entity @p weapon.mainhand with minecraft:torch 64");
+        server.runCommand("item replace entity @p weapon.offhand with minecraft:stick 64");
+    }
+
+    private static boolean isTorch(TestServerContext server, BlockPos pos) {
+        return server.computeOnServer(s -> s.getOverworld().getBlockState(pos).isOf(Blocks.TORCH));
+    }
+
+    private static String setblock(BlockPos pos, String block) {
+        return String.format(Locale.ROOT, "setblock %d %d %d %s", pos.getX(), pos.getY(), pos.getZ(), block);
+    }
+
+    private long[] measure(ClientGameTestContext context, BlockPos feet) {
+        context.runOnClient(client -> {
+            blockTargets = List.of(
+                    topFace(feet.down().east()),
+                    topFace(feet.west(2)),
+                    topFace(feet.north(2)));
+            entityTarget = client.world.getEntitiesByClass(CowEntity.class, new Box(feet).expand(4), cow -> true)
+                    .stream().findFirst().orElse(null);
+            ticksRun = 0;
+            running = true;
+        });
+        context.waitTicks(WARMUP_TICKS + MEASURED_TICKS);
+        return context.computeOnClient(client -> {
+            running = false;
+            return Arrays.copyOf(tickNanos, Math.max(0, Math.min(ticksRun - WARMUP_TICKS, MEASURED_TICKS)));
+        });
+    }
+
+    private static BlockHitResult topFace(BlockPos pos) {
+        return new BlockHitResult(Vec3d.ofCenter(pos).add(0, 0.5, 0), Direction.UP, pos, false);
+    }
+
+    private void clickBurst(MinecraftClient client) {
+        if (!running || client.player == null || client.interactionManager == null) {
+            return;
+        }
+        for (int i = 0; i < CLICKS_PER_TICK; i++) {
+            Hand hand = i % 2 == 0 ? Hand.MAIN_HAND : Hand.OFF_HAND;
+            if (i % 5 == 4 && entityTarget != null) {
+                client.interactionManager.interactEntity(client.player, entityTarget, hand);
+            } else {
+                client.interactionManager.interactBlock(client.player, hand, blockTargets.get(i % blockTargets.size()));
+            }
+        }
+    }
+
+    private void recordTick(MinecraftClient client) {
+        if (!running) {
+            return;
+        }
+        int measured = ticksRun++ - WARMUP_TICKS;
+        if (measured >= 0 && measured < MEASURED_TICKS) {
+            tickNanos[measured] = System.nanoTime() - tickStart;
+        }
+    }
+
+    private static void report(String label, long[] ticks) {
+        double mean = Arrays.stream(ticks).average().orElse(0);
+        LOGGER.info(String.format(Locale.ROOT, "Tick time, %s: mean %.3f ms, p99 %.3f ms over %d ticks of %d clicks",
+                label, mean / 1e6, percentile(ticks, 99) / 1e6, ticks.length, CLICKS_PER_TICK));
+    }
+
+    private static long percentile(long[] values, int percentile) {
+        if (values.length == 0) {
+            return 0;
+        }
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
@@ -0,0 +1,61 @@
+package me.lucievol.forbiddenblocks.gametest;
+
+import me.lucievol.forbiddenblocks.ForbiddenBlocksClient;
+import net.fabricmc.fabric.api.client.gametest.v1.FabricClientGameTest;
+import net.fabricmc.fabric.api.client.gametest.v1.context.ClientGameTestContext;
+import net.fabricmc.fabric.api.client.gametest.v1.context.TestSingleplayerContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Allocation budget for the mod's END_CLIENT_TICK listener with a player in game and no
+ * screen open, the state in which it polls the key bindings every tick.
+ *
+ * The listener is warmed up, then called many times on the client thread while the thread's
+ * allocated byte counter is read before and after. The test fails when the whole run
+ * allocates more than a small fixed budget, far below one object per call. This counts
+ * bytes rather than time, so it holds on any machine and runs with every build.
+ */
+public class TickAllocationGameTest implements FabricClientGameTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger("forbiddenblocks");
+    private static final int WARMUP_CALLS = 20_000;
+    private static final int MEASURED_CALLS = 100_000;
+    // For the whole measured run; leaves room for counter noise but not for one allocation per call
+    private static final long BUDGET_BYTES = 4096;
+
+    @Override
+    public void runTest(ClientGameTestContext context) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            LOGGER.warn("JVM cannot measure thread allocations, skipping the tick allocation budget");
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        try (TestSingleplayerContext singleplayer = context.worldBuilder().create()) {
+            singleplayer.getClientWorld().waitForChunksRender();
+            long allocated = context.computeOnClient(client -> {
+                if (client.player == null || client.world == null || client.currentScreen != null) {
+                    throw new AssertionError("Expected a player in game with no screen open, found screen "
+                            + client.currentScreen);
+                }
+                for (int i = 0; i < WARMUP_CALLS; i++) {
+                    ForbiddenBlocksClient.onEndTick(client);
+                }
+                long before = threads.getCurrentThreadAllocatedBytes();
+                for (int i = 0; i < MEASURED_CALLS; i++) {
+                    ForbiddenBlocksClient.onEndTick(client);
+                }
+                return threads.getCurrentThreadAllocatedBytes() - before;
+            });
+            LOGGER.info("END_CLIENT_TICK listener, player in game: {} bytes over {} calls (budget {})",
+                    allocated, MEASURED_CALLS, BUDGET_BYTES);
+            if (allocated > BUDGET_BYTES) {
+                throw new AssertionError("END_CLIENT_TICK listener allocated " + allocated + " bytes over "
+                        + MEASURED_CALLS + " calls, budget is " + BUDGET_BYTES);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package me.lucievol.forbiddenblocks.gametest.mixin;
+
+import me.lucievol.forbiddenblocks.InteractionPipeline;
+import me.lucievol.forbiddenblocks.gametest.HookSwitches;
+import net.minecraft.util.ActionResult;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * Lets game tests switch parts of the pipeline off, see {@link HookSwitches}.
+ * The target is the mod's own class, so nothing is remapped.
+ */
+@Mixin(value = InteractionPipeline.class, remap = false)
+public class InteractionPipelineMixin {
+	@Inject(at = @At("HEAD"), method = "interceptBlockUse", cancellable = true)
+	private static void forbiddenblocksGametest$skipMixinDecision(CallbackInfoReturnable<ActionResult> cir) {
+		if (HookSwitches.skipMixinDecision) {
+			cir.setReturnValue(ActionResult.PASS);
+		}
+	}
+
+	@Inject(at = @At("HEAD"), method = {"interceptBlockUse", "onBlockUse", "onEntityUse", "onItemUse"}, cancellable = true)
+	private static void forbiddenblocksGametest$bypassAll(CallbackInfoReturnable<ActionResult> cir) {
+		if (HookSwitches.bypassAll) {
+			cir.setReturnValue(ActionResult.PASS);
+		}
+	}
+}
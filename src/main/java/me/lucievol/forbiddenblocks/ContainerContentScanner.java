@@ -0,0 +1,128 @@
+package me.lucievol.forbiddenblocks;
+
+import me.lucievol.forbiddenblocks.config.ItemProbe;
+import me.lucievol.forbiddenblocks.config.WorldConfig;
+import net.minecraft.component.DataComponentTypes;
+import net.minecraft.component.type.BundleContentsComponent;
+import net.minecraft.component.type.ContainerComponent;
+import net.minecraft.item.ItemStack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds forbidden items stored inside container items such as shulker boxes and bundles.
+ *
+ * Contents are read from the "minecraft:container" and "minecraft:bundle_contents"
+ * components and scanned recursively, so a forbidden item inside a bundle inside a
+ * shulker box is found as well.
+ *
+ * Key Features:
+ * - Results are memoized per content component. The components are immutable and compare
+ *   by their contents, so every stack with the same contents shares one cached answer
+ * - Nested containers are memoized on their own, so a box full of identical bundles
+ *   scans the bundle once
+ * - Only contained items mentioned by a rule are checked, computing no more identity than the rule needs
+ * - The cache is dropped whenever the world or its rules change
+ *
+ * Only used from the client thread.
+ */
+public final class ContainerContentScanner {
+    private static final Logger LOGGER = LoggerFactory.getLogger("forbiddenblocks");
+    // Deeper nesting cannot be created in vanilla; this only guards against malformed data
+    private static final int MAX_DEPTH = 16;
+    // Distinct contents seen between rule changes are few; clearing keeps a long session bounded
+    private static final int MAX_CACHED = 512;
+
+    private static final Map<Object, Boolean> RESULTS = new HashMap<>();
+    // Reused for each contained stack; a stack's probe is no longer needed once its nested contents are scanned
+    private static final ItemProbe PROBE = new ItemProbe();
+    private static WorldConfig cachedWorld = null;
+    private static long cachedRulesVersion = -1;
+
+    private ContainerContentScanner() {
+    }
+
+    /**
+     * Checks whether the stack holds a forbidden item anywhere in its contents.
+     *
+     * @param stack The stack to check, usually a shulker box or bundle
+     * @param world The rules to check against
+     * @return true if a contained item, at any depth, is forbidden
+     */
+    public static boolean containsForbidden(ItemStack stack, WorldConfig world) {
+        ContainerComponent container = stack.get(DataComponentTypes.CONTAINER);
+        BundleContentsComponent bundle = stack.get(DataComponentTypes.BUNDLE_CONTENTS);
+        if (container == null && bundle == null) {
+            return false;
+        }
+        long rulesVersion = WorldConfig.getRulesVersion();
+        if (world != cachedWorld || rulesVersion != cachedRulesVersion || RESULTS.size() >= MAX_CACHED) {
+            RESULTS.clear();
+            cachedWorld = world;
+            cachedRulesVersion = rulesVersion;
+        }
+        return (container != null && scanContainer(container, world, 0))
+                || (bundle != null && scanBundle(bundle, world, 0));
+    }
+
+    private static boolean scanContainer(ContainerComponent container, WorldConfig world, int depth) {
+        Boolean cached = RESULTS.get(container);
+        if (cached != null) {
+            return cached;
+        }
+        boolean found = false;
+        for (ItemStack inner : container.iterateNonEmpty()) {
+            if (isForbidden(inner, world, depth)) {
+                found = true;
+                break;
+            }
+        }
+        RESULTS.put(container, found);
+        return found;
+    }
+
+    private static boolean scanBundle(BundleContentsComponent bundle, WorldConfig world, int depth) {
+        Boolean cached = RESULTS.get(bundle);
+        if (cached != null) {
+            return cached;
+        }
+        boolean found = false;
+        for (ItemStack inner : bundle.iterate()) {
+            if (isForbidden(inner, world, depth)) {
+                found = true;
+                break;
+            }
+        }
+        RESULTS.put(bundle, found);
+        return found;
+    }
+
+    /**
+     * Checks one contained stack, then its own contents.
+     */
+    private static boolean isForbidden(ItemStack inner, WorldConfig world, int depth) {
+        if (inner.isEmpty()) {
+            return false;
+        }
+        if (world.mayForbid(inner.getItem())) {
+            PROBE.reset(inner, world.getIdentityMask());
+            WorldConfig.ItemIdentifier rule = world.findRule(PROBE);
+            if (rule != null) {
+                LOGGER.debug("Found forbidden item {} inside a container", rule.getRegistryId());
+                return true;
+            }
+        }
+        if (depth + 1 >= MAX_DEPTH) {
+            return false;
+        }
+        ContainerComponent container = inner.get(DataComponentTypes.CONTAINER);
+        if (container != null && scanContainer(container, world, depth + 1)) {
+            return true;
+        }
+        BundleContentsComponent bundle = inner.get(DataComponentTypes.BUNDLE_CONTENTS);
+        return bundle != null && scanBundle(bundle, world, depth + 1);
+    }
+}
@@ -0,0 +1,390 @@
+package me.lucievol.forbiddenblocks;
+
+import me.lucievol.forbiddenblocks.config.EntityPolicyTable;
+import me.lucievol.forbiddenblocks.config.ForbiddenBlocksConfig;
+import me.lucievol.forbiddenblocks.config.ItemProbe;
+import me.lucievol.forbiddenblocks.config.WorldConfig;
+import net.fabricmc.fabric.api.event.player.UseBlockCallback;
+import net.fabricmc.fabric.api.event.player.UseEntityCallback;
+import net.fabricmc.fabric.api.event.player.UseItemCallback;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.BlockItem;
+import net.minecraft.item.BoatItem;
+import net.minecraft.item.FireworkRocketItem;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemPlacementContext;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.PlaceableOnWaterItem;
+import net.minecraft.registry.Registries;
+import net.minecraft.text.Text;
+import net.minecraft.util.ActionResult;
+import net.minecraft.util.Hand;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.block.BlockState;
+import net.minecraft.state.property.Properties;
+import net.minecraft.block.TrapdoorBlock;
+import net.minecraft.block.FenceGateBlock;
+import net.minecraft.block.CraftingTableBlock;
+import net.minecraft.block.AnvilBlock;
+import net.minecraft.block.GrindstoneBlock;
+import net.minecraft.block.StonecutterBlock;
+import net.minecraft.block.CartographyTableBlock;
+import net.minecraft.block.FletchingTableBlock;
+import net.minecraft.block.SweetBerryBushBlock;
+import net.minecraft.block.CaveVines;
+import net.minecraft.block.ButtonBlock;
+import net.minecraft.block.LeverBlock;
+import net.minecraft.block.NoteBlock;
+import net.minecraft.block.JukeboxBlock;
+import net.minecraft.block.SkullBlock;
+import net.minecraft.block.WallSkullBlock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Single interception pipeline for every interaction the mod guards.
+ * 
+ * Block use, entity use and item use (firing rockets while flying, placing boats
+ * and lily pads on water) all ask this class whether the held stack is forbidden.
+ * Block use is decided first by a mixin at the start of
+ * ClientPlayerInteractionManager.interactBlock; the Fabric callback is a fallback.
+ * The answer is computed once per hand per client tick and shared by every callback
+ * that fires in the same tick, so adding hooks does not multiply the cost of
+ * building item identities.
+ * 
+ * Fabric also fires the use callbacks on the integrated server's thread; those calls
+ * return before touching any state, so everything else runs on the client thread
+ * and the per-hand cache needs no locking.
+ * Stacks whose item is not mentioned by any rule are rejected before anything else
+ * is computed, so the common allowed path allocates nothing. Otherwise the stack's
+ * name and component identity are only computed when a rule for its item needs them.
+ * 
+ * When container content protection is enabled, placing a container block that holds
+ * a forbidden item is blocked too; see {@link ContainerContentScanner}. Items that are
+ * not blocks are never blocked for their contents.
+ */
+public final class InteractionPipeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger("forbiddenblocks");
+
+    /**
+     * Cached decision for the stack held in one hand during one tick.
+     * Instances are reused; callers must not keep them beyond the current callback.
+     */
+    static final class Evaluation {
+        private long tick = -1;
+        private long rulesVersion = -1;
+        private ItemStack stack = ItemStack.EMPTY;
+        private WorldConfig world;
+        // Lazily computed identity of the stack, reused by the zone check
+        private final ItemProbe probe = new ItemProbe();
+        // The rule that forbids the stack, or null
+        private WorldConfig.ItemIdentifier rule;
+        private boolean forbidden;
+        // Set when the stack itself is allowed but is a block that would place a forbidden item with it
+        private boolean forbiddenContents;
+
+        /**
+         * Checks whether the stack, or an item a placed block of it would hold, is forbidden.
+         */
+        boolean isForbidden() {
+            return forbidden || forbiddenContents;
+        }
+    }
+
+    private static final Evaluation MAIN_HAND = new Evaluation();
+    private static final Evaluation OFF_HAND = new Evaluation();
+    private static long currentTick = 0;
+    // Tick and hand of the last click decided by the interactBlock mixin
+    private static long interceptedTick = -1;
+    private static Hand interceptedHand = null;
+
+    private InteractionPipeline() {
+    }
+
+    /**
+     * Registers the pipeline with the block, entity and item use callbacks.
+     */
+    public static void register() {
+        UseBlockCallback.EVENT.register(InteractionPipeline::onBlockUse);
+        UseEntityCallback.EVENT.register(InteractionPipeline::onEntityUse);
+        UseItemCallback.EVENT.register(InteractionPipeline::onItemUse);
+    }
+
+    /**
+     * Advances the tick counter, expiring cached decisions. Called once per client tick.
+     */
+    public static void onTick() {
+        currentTick++;
+    }
+
+    /**
+     * Gets the decision for the stack in the given hand, computing it at most once
+     * per tick unless the stack, world or rules change in between.
+     */
+    static Evaluation evaluate(PlayerEntity player, Hand hand) {
+        return evaluate(hand == Hand.MAIN_HAND ? MAIN_HAND : OFF_HAND, player.getStackInHand(hand),
+                WorldConfig.getCurrentWorld());
+    }
+
+    /**
+     * Gets the decision for a stack, reusing the given evaluation if it already holds it.
+     * Needs no player, so tests can drive it directly.
+     */
+    static Evaluation evaluate(Evaluation evaluation, ItemStack stack, WorldConfig world) {
+        long rulesVersion = WorldConfig.getRulesVersion();
+        if (evaluation.tick == currentTick && evaluation.stack == stack && evaluation.world == world
+                && evaluation.rulesVersion == rulesVersion) {
+            return evaluation;
+        }
+        evaluation.tick = currentTick;
+        evaluation.stack = stack;
+        evaluation.world = world;
+        evaluation.rulesVersion = rulesVersion;
+        evaluation.probe.reset(stack, world.getIdentityMask());
+        evaluation.rule = null;
+        evaluation.forbidden = false;
+        evaluation.forbiddenContents = false;
+        if (!stack.isEmpty() && world.mayForbid(stack.getItem())) {
+            evaluation.rule = world.findRule(evaluation.probe);
+            evaluation.forbidden = evaluation.rule != null;
+        }
+        // Only placing a container puts its contents into the world; bundles and other item
+        // containers are left alone, so their contents never turn a click into a FAIL
+        if (!evaluation.forbidden && stack.getItem() instanceof BlockItem
+                && ForbiddenBlocksConfig.get().shouldProtectContainerContents()) {
+            evaluation.forbiddenContents = ContainerContentScanner.containsForbidden(stack, world);
+        }
+        return evaluation;
+    }
+
+    /**
+     * Entry point for the interactBlock mixin, which runs before any Fabric listener.
+     * Records that this click was decided, so the fallback callback does not decide it again.
+     * 
+     * @return FAIL to cancel the interaction, PASS to let it continue
+     */
+    public static ActionResult interceptBlockUse(ClientPlayerEntity player, Hand hand,
+            net.minecraft.util.hit.BlockHitResult hitResult) {
+        ActionResult result = checkBlockUse(player, player.getWorld(), hand, hitResult);
+        interceptedTick = currentTick;
+        interceptedHand = hand;
+        return result;
+    }
+
+    /**
+     * Fabric UseBlockCallback fallback, used when the mixin did not already decide this click.
+     */
+    private static ActionResult onBlockUse(PlayerEntity player, net.minecraft.world.World world, Hand hand,
+            net.minecraft.util.hit.BlockHitResult hitResult) {
+        if (!world.isClient)
+            return ActionResult.PASS;
+        if (interceptedTick == currentTick && interceptedHand == hand) {
+            interceptedTick = -1;
+            return ActionResult.PASS;
+        }
+        return checkBlockUse(player, world, hand, hitResult);
+    }
+
+    private static ActionResult checkBlockUse(PlayerEntity player, net.minecraft.world.World world, Hand hand,
+            net.minecraft.util.hit.BlockHitResult hitResult) {
+        if (!(player instanceof ClientPlayerEntity clientPlayer))
+            return ActionResult.PASS;
+        Evaluation evaluation = evaluate(player, hand);
+        boolean isForbidden = evaluation.isForbidden();
+        if (!isForbidden && !evaluation.stack.isEmpty() && evaluation.world.hasZones()) {
+            isForbidden = evaluation.world.isForbiddenInZone(world.getRegistryKey().getValue(),
+                    getPlacementPos(player, hand, evaluation.stack, hitResult), evaluation.probe);
+        }
+        if (!isForbidden)
+            return ActionResult.PASS;
+        Identifier registryId = Registries.ITEM.getId(evaluation.stack.getItem());
+        String itemName = evaluation.stack.getName().getString();
+        if (evaluation.forbiddenContents) {
+            itemName += " (holds a forbidden item)";
+        }
+        BlockState targetBlockStateInitial = world.getBlockState(hitResult.getBlockPos());
+        net.minecraft.block.Block targetBlockInitial = targetBlockStateInitial.getBlock();
+        LOGGER.debug("onBlockUse: Forbidden item {} in {} hand targeting {}", itemName, hand,
+                targetBlockInitial.getClass().getName());
+
+        // Check for SkullBlock or WallSkullBlock first (covers player heads)
+        if (targetBlockInitial instanceof SkullBlock || targetBlockInitial instanceof WallSkullBlock) {
+            if (hand == Hand.MAIN_HAND) {
+                if (ForbiddenBlocksConfig.get().shouldShowMessages()) {
+                    clientPlayer.sendMessage(Text.of("§cYou cannot place " + itemName + " on a skull block! (Client-Side)"), false);
+                }
+                LOGGER.info("Blocked placement of forbidden item: {} (Registry: {}) on SkullBlock/WallSkullBlock", itemName, registryId);
+                return ActionResult.FAIL;
+            }
+        }
+
+        BlockState targetBlockState = targetBlockStateInitial;
+        net.minecraft.block.Block targetBlock = targetBlockInitial;
+        if (hand == Hand.MAIN_HAND) {
+            // Sneaking with an item in either hand skips the target block's own use and uses
+            // the held item instead, so none of the block interactions allowed below happen
+            // and the forbidden item would be placed
+            if (player.shouldCancelInteraction()
+                    && (!player.getMainHandStack().isEmpty() || !player.getOffHandStack().isEmpty())) {
+                LOGGER.debug("Sneaking, so {} would be placed rather than {} used", itemName,
+                        targetBlock.getName().getString());
+            }
+            // If the user has commented out the MusicDiscItem-specific Jukebox logic,
+            // Jukeboxes should not be caught by the general utility block pass rule below.
+            // They should instead fall through to the general FAIL for forbidden main-hand
+            // items.
+            else if (!(targetBlock instanceof JukeboxBlock) && // Explicitly exclude JukeboxBlock here
+                    (targetBlock instanceof net.minecraft.block.BlockEntityProvider ||
+                            targetBlock instanceof net.minecraft.block.DoorBlock ||
+                            targetBlock instanceof net.minecraft.block.TrapdoorBlock ||
+                            targetBlock instanceof net.minecraft.block.FenceGateBlock ||
+                            targetBlock instanceof net.minecraft.block.CraftingTableBlock ||
+                            targetBlock instanceof net.minecraft.block.AnvilBlock ||
+                            targetBlock instanceof net.minecraft.block.GrindstoneBlock ||
+                            targetBlock instanceof net.minecraft.block.StonecutterBlock ||
+                            targetBlock instanceof net.minecraft.block.CartographyTableBlock ||
+                            targetBlock instanceof net.minecraft.block.FletchingTableBlock ||
+                            targetBlock instanceof ButtonBlock ||
+                            targetBlock instanceof LeverBlock ||
+                            targetBlock instanceof NoteBlock)) {
+                LOGGER.info(
+                        "Allowing interaction with utility/job block '{}' (excluding Jukebox) with forbidden item '{}' in main hand.",
+                        targetBlock.getName().getString(), itemName);
+                return ActionResult.PASS;
+            }
+            // The user is expected to have commented out the following block if
+            // MusicDiscItem causes build issues.
+            // If it's not commented out and MusicDiscItem resolves, it will take precedence
+            // for Jukeboxes.
+            // If it IS commented out, Jukeboxes are not caught by the above utility check,
+            // so they will fall to the general FAIL.
+            else if (targetBlock instanceof JukeboxBlock) {
+                // ItemStack offHandStack = player.getStackInHand(Hand.OFF_HAND);
+                // if (offHandStack.getItem() instanceof MusicDiscItem) { // This line is
+                // problematic if MusicDiscItem is unresolved
+                // LOGGER.info("Allowing jukebox interaction (inserting disc from off-hand) with
+                // forbidden item '{}' in main hand.", itemName);
+                // return ActionResult.PASS; // Allow interaction to use the disc
+                // }
+                // If the above MusicDiscItem check is commented out or fails,
+                // a Jukebox interaction with a forbidden main-hand item will correctly fall
+                // through to the general FAIL logic.
+            } else if (targetBlock instanceof SweetBerryBushBlock) {
+                if (targetBlockState.get(Properties.AGE_3) == 3) {
+                    LOGGER.info("Allowing sweet berry harvest from '{}' with forbidden item '{}' in main hand.",
+                            targetBlock.getName().getString(), itemName);
+                    return ActionResult.PASS;
+                }
+            }
+            // Consolidated check for CaveVines (covers head and plant parts if they extend
+            // CaveVines)
+            else if (targetBlock instanceof CaveVines) {
+                // Check if the BERRIES property exists and is true
+                // CaveVines itself has the BERRIES property. CaveVinesHeadBlock extends
+                // CaveVines.
+                // CaveVinesPlantBlock also extends CaveVines.
+                if (targetBlockState.contains(Properties.BERRIES) && targetBlockState.get(Properties.BERRIES)) {
+                    LOGGER.info(
+                            "Allowing glow berry harvest from CaveVines block '{}' with forbidden item '{}' in main hand.",
+                            targetBlock.getName().getString(), itemName);
+                    return ActionResult.PASS;
+                }
+            }
+            // If none of the above specific interactions are allowed, then forbid the
+            // action.
+            if (ForbiddenBlocksConfig.get().shouldShowMessages()) {
+                clientPlayer.sendMessage(Text.of("§cYou cannot place " + itemName + "! (Client-Side)"), false);
+            }
+            LOGGER.info("Blocked placement of forbidden item: {} (Registry: {}) with {} hand on block {}", itemName,
+                    registryId, hand, targetBlock.getName().getString());
+            return ActionResult.FAIL;
+        }
+        // If item is forbidden and it's not the main hand (i.e., off-hand or other
+        // interaction),
+        // and it's not covered by a more specific rule above, then block it.
+        // This primarily handles placing a forbidden block from the off-hand if that's
+        // how interaction works.
+        if (ForbiddenBlocksConfig.get().shouldShowMessages()) {
+            clientPlayer.sendMessage(Text.of("§cYou cannot place " + itemName + "! (Client-Side)"), false);
+        }
+        LOGGER.info("Blocked placement/interaction with forbidden item: {} (Registry: {}) with {} hand on block {}",
+                itemName, registryId, hand, targetBlock.getName().getString());
+        return ActionResult.FAIL;
+    }
+
+    /**
+     * Gets the cell a block placed by this click would occupy: the clicked block itself
+     * if it can be replaced (grass, snow layers, a slab being doubled, ...), otherwise the
+     * cell next to the clicked face. Uses the same placement context vanilla placement uses,
+     * so zone checks test the cell that would actually change.
+     */
+    private static BlockPos getPlacementPos(PlayerEntity player, Hand hand, ItemStack stack,
+            net.minecraft.util.hit.BlockHitResult hitResult) {
+        return new ItemPlacementContext(player, hand, stack, hitResult).getBlockPos();
+    }
+
+    private static ActionResult onEntityUse(PlayerEntity player, net.minecraft.world.World world, Hand hand,
+            net.minecraft.entity.Entity entity,
+            @org.jetbrains.annotations.Nullable net.minecraft.util.hit.EntityHitResult hitResult) {
+        if (!world.isClient)
+            return ActionResult.PASS;
+        return checkEntityUse(player, hand, entity);
+    }
+
+    private static ActionResult checkEntityUse(PlayerEntity player, Hand hand, net.minecraft.entity.Entity entity) {
+        if (!(player instanceof ClientPlayerEntity clientPlayer))
+            return ActionResult.PASS;
+        if (player.getStackInHand(hand).isEmpty())
+            return ActionResult.PASS;
+        // Main-hand use on an allowed entity type passes whether or not the item is forbidden,
+        // so the identity is never built for it
+        if (hand == Hand.MAIN_HAND
+                && ForbiddenBlocksConfig.get().getEntityPolicies().get(entity) == EntityPolicyTable.Policy.ALLOW)
+            return ActionResult.PASS;
+        Evaluation evaluation = evaluate(player, hand);
+        if (evaluation.forbidden) {
+            String itemName = evaluation.stack.getName().getString();
+            String entityName = entity.getName().getString();
+            if (ForbiddenBlocksConfig.get().shouldShowMessages()) {
+                clientPlayer.sendMessage(Text.of("§cAction with " + itemName + " on " + entityName
+                        + " is blocked! (Client-Side)"), false);
+            }
+            LOGGER.info("Blocked entity interaction with forbidden item: {} (Registry: {}) with {} hand on entity {}",
+                    itemName, evaluation.rule.getRegistryId(), hand, entityName);
+            return ActionResult.FAIL;
+        }
+        return ActionResult.PASS;
+    }
+
+    /**
+     * Guards uses that spend or place the item without targeting a block: firing a
+     * rocket (including while elytra-flying) and placing boats or lily pads on water.
+     * Other item uses, such as eating or raising a shield, are left alone.
+     */
+    private static ActionResult onItemUse(PlayerEntity player, net.minecraft.world.World world, Hand hand) {
+        if (!world.isClient)
+            return ActionResult.PASS;
+        return checkItemUse(player, hand);
+    }
+
+    private static ActionResult checkItemUse(PlayerEntity player, Hand hand) {
+        if (!(player instanceof ClientPlayerEntity clientPlayer))
+            return ActionResult.PASS;
+        Item item = player.getStackInHand(hand).getItem();
+        if (!(item instanceof FireworkRocketItem || item instanceof BoatItem || item instanceof PlaceableOnWaterItem))
+            return ActionResult.PASS;
+        Evaluation evaluation = evaluate(player, hand);
+        if (evaluation.forbidden) {
+            String itemName = evaluation.stack.getName().getString();
+            if (ForbiddenBlocksConfig.get().shouldShowMessages()) {
+                clientPlayer.sendMessage(Text.of("§cYou cannot use " + itemName + "! (Client-Side)"), false);
+            }
+            LOGGER.info("Blocked use of forbidden item: {} (Registry: {}) with {} hand", itemName,
+                    evaluation.rule.getRegistryId(), hand);
+            return ActionResult.FAIL;
+        }
+        return ActionResult.PASS;
+    }
+}
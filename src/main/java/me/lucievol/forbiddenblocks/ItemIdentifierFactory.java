@@ -0,0 +1,157 @@
+package me.lucievol.forbiddenblocks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
+import com.mojang.serialization.JsonOps;
+import me.lucievol.forbiddenblocks.config.ComponentMask;
+import me.lucievol.forbiddenblocks.config.WorldConfig;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.item.ItemStack;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.RegistryWrapper;
+import net.minecraft.util.Identifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds {@link WorldConfig.ItemIdentifier} instances from item stacks.
+ *
+ * Each component in the identity mask is encoded through its own codec into
+ * compact JSON, rather than reflecting over the component's Java class. Codecs
+ * are resolved once per component type by {@link ComponentMask}, and the
+ * registry-aware JSON ops are reused until the client's registries change.
+ *
+ * Object keys in the encoded output are sorted, so the same item always produces
+ * the same identity regardless of hash map iteration order inside a component.
+ */
+public final class ItemIdentifierFactory {
+    private static final Logger LOGGER = LoggerFactory.getLogger("forbiddenblocks");
+
+    // Registry-aware ops for the registries they were created from, swapped on world change
+    private static volatile RegistryWrapper.WrapperLookup cachedRegistries = null;
+    private static volatile DynamicOps<JsonElement> cachedOps = JsonOps.INSTANCE;
+
+    private ItemIdentifierFactory() {
+    }
+
+    /**
+     * Creates an identifier for the given stack using the components in the mask.
+     *
+     * @param stack The item stack to identify
+     * @param mask The component types that count toward the identity
+     * @return The identifier, or null if the stack is empty or cannot be identified
+     */
+    public static WorldConfig.ItemIdentifier create(ItemStack stack, ComponentMask mask) {
+        return create(stack, mask, getOps());
+    }
+
+    /**
+     * Creates an identifier using the given JSON ops instead of ones bound to the client's
+     * registries, for callers that have registries but no client world.
+     */
+    static WorldConfig.ItemIdentifier create(ItemStack stack, ComponentMask mask, DynamicOps<JsonElement> ops) {
+        if (stack == null || stack.isEmpty()) {
+            LOGGER.warn("Attempted to get identifier for null/empty stack");
+            return null;
+        }
+        try {
+            Identifier id = Registries.ITEM.getId(stack.getItem());
+            if (id == null) {
+                LOGGER.warn("Item has no registry ID: {}", stack);
+                return null;
+            }
+            String registryId = id.toString();
+            String displayName = stack.getName().getString();
+
+            // Mask entries are sorted by ID, so this object is built in a stable order
+            JsonObject components = new JsonObject();
+            for (int i = 0; i < mask.size(); i++) {
+                Object value = stack.get(mask.getType(i));
+                if (value == null) {
+                    continue;
+                }
+                Codec<Object> codec = mask.getCodec(i);
+                DataResult<JsonElement> result = codec.encodeStart(ops, value);
+                JsonElement encoded = result.result().orElse(null);
+                if (encoded == null) {
+                    LOGGER.error("Failed to encode component {} for item {}: {}", mask.getId(i), registryId,
+                            result.error().map(Object::toString).orElse("unknown error"));
+                    continue;
+                }
+                components.add(mask.getId(i), canonicalize(encoded));
+            }
+            String componentsJson = components.toString();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Created identifier for {} ({}) with components {}", registryId, displayName, componentsJson);
+            }
+            return new WorldConfig.ItemIdentifier(registryId, displayName, componentsJson);
+        } catch (Exception e) {
+            LOGGER.error("Error getting item identifier for stack " + stack, e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets JSON ops bound to the current client registries, so components that
+     * reference dynamic registry entries (enchantments, trims, ...) encode by key.
+     * Falls back to plain JSON ops when no world is loaded.
+     */
+    private static DynamicOps<JsonElement> getOps() {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client == null || client.world == null) {
+            return JsonOps.INSTANCE;
+        }
+        RegistryWrapper.WrapperLookup registries = client.world.getRegistryManager();
+        if (registries != cachedRegistries) {
+            cachedOps = registries.getOps(JsonOps.INSTANCE);
+            cachedRegistries = registries;
+        }
+        return cachedOps;
+    }
+
+    /**
+     * Returns a copy of the element with all object keys sorted recursively.
+     */
+    private static JsonElement canonicalize(JsonElement element) {
+        if (element.isJsonObject()) {
+            JsonObject source = element.getAsJsonObject();
+            if (source.size() < 2 && !containsContainer(source)) {
+                return source;
+            }
+            List<String> keys = new ArrayList<>(source.keySet());
+            Collections.sort(keys);
+            JsonObject sorted = new JsonObject();
+            for (String key : keys) {
+                sorted.add(key, canonicalize(source.get(key)));
+            }
+            return sorted;
+        }
+        if (element.isJsonArray()) {
+            JsonArray source = element.getAsJsonArray();
+            JsonArray copy = new JsonArray(source.size());
+            for (JsonElement child : source) {
+                copy.add(canonicalize(child));
+            }
+            return copy;
+        }
+        return element;
+    }
+
+    private static boolean containsContainer(JsonObject object) {
+        for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+            if (entry.getValue().isJsonObject() || entry.getValue().isJsonArray()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
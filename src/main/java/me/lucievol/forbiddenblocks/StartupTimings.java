@@ -0,0 +1,69 @@
+package me.lucievol.forbiddenblocks;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Records how long each phase of the mod's startup takes and logs the result once.
+ * 
+ * Phases run at client initialization (keybindings, callbacks) and at the first
+ * world join, where deferred work such as config registration and the first world
+ * file load happens. The report is logged after the first join so launch-time and
+ * join-time costs show up together, in milliseconds.
+ * 
+ * Only used from the client thread.
+ */
+public final class StartupTimings {
+    private static final Logger LOGGER = LoggerFactory.getLogger("forbiddenblocks");
+    private static final Map<String, Long> PHASE_NANOS = new LinkedHashMap<>();
+    private static boolean reported = false;
+
+    private StartupTimings() {
+    }
+
+    /**
+     * Records a phase that started at the given time and ends now.
+     * Phases recorded after the report has been logged are ignored.
+     * 
+     * @param phase Name of the phase
+     * @param startNanos Value of {@link System#nanoTime()} when the phase started
+     * @return The current time, for chaining into the next phase
+     */
+    public static long record(String phase, long startNanos) {
+        long now = System.nanoTime();
+        if (!reported) {
+            PHASE_NANOS.merge(phase, now - startNanos, Long::sum);
+        }
+        return now;
+    }
+
+    /**
+     * Checks whether the report has been logged already.
+     * 
+     * @return true once {@link #report()} has run
+     */
+    public static boolean isReported() {
+        return reported;
+    }
+
+    /**
+     * Logs all recorded phases once. Later calls do nothing.
+     */
+    public static void report() {
+        if (reported) {
+            return;
+        }
+        reported = true;
+        long totalNanos = PHASE_NANOS.values().stream().mapToLong(Long::longValue).sum();
+        String phases = PHASE_NANOS.entrySet().stream()
+                .map(entry -> String.format("%s=%.2fms", entry.getKey(), entry.getValue() / 1_000_000.0))
+                .collect(Collectors.joining(", "));
+        LOGGER.info("ForbiddenBlocks startup timings: {} (total {} ms)", phases,
+                String.format("%.2f", totalNanos / 1_000_000.0));
+        PHASE_NANOS.clear();
+    }
+}
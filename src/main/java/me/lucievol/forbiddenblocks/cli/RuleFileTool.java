@@ -0,0 +1,886 @@
+package me.lucievol.forbiddenblocks.cli;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Offline command-line tool for rule files, runnable without the game.
+ *
+ * Usage: {@code RuleFileTool <validate|dedupe|normalize|convert|migrate> [--threads N] [--dry-run] [path...]}
+ *
+ * Paths may be rule files or directories, which are searched for *.json files. Without
+ * paths, config/forbiddenblocks in the working directory is used.
+ *
+ * Commands:
+ * - validate: Checks every file and entry, never writes
+ * - dedupe: Removes repeated entries from the forbidden and allowed lists
+ * - convert: Rewrites legacy bare-array files in the layered {"forbidden": [...]} format
+ * - normalize: dedupe and convert, plus sorted entries and sorted component JSON keys
+ * - migrate: Turns exact rules saved before identities were built from the component mask,
+ *   which can no longer match any item, into name rules for the same item and display name,
+ *   and marks the file with the current format version
+ *
+ * Key Features:
+ * - Files are processed in parallel on a fixed pool sized to the available cores
+ * - Rule lists are read and written with Gson's streaming reader and writer, no object mapping
+ * - Files are only rewritten when their content changes, in place under the same exclusive
+ *   file lock the mod takes when it saves, and only if nothing changed them since they were read
+ * - Files with errors are reported and never rewritten
+ * - Per-file stats and total throughput are printed at the end
+ *
+ * Uses no Minecraft classes, so it runs from the plain runtime classpath ({@code gradlew ruleTool}).
+ */
+public final class RuleFileTool {
+    private static final Gson GSON = new Gson();
+    private static final Path DEFAULT_PATH = Paths.get("config", "forbiddenblocks");
+    private static final Pattern REGISTRY_ID = Pattern.compile("[a-z0-9_.-]+:[a-z0-9_./-]+");
+    private static final Set<String> MATCH_MODES = Set.of("registry", "name", "exact");
+    // How long to wait for a running game to release a file before giving up on it
+    private static final long LOCK_TIMEOUT_MILLIS = 2000;
+    // Mirrors WorldConfig.FORMAT_VERSION; files without a version may hold legacy exact rules
+    private static final int FORMAT_VERSION = 2;
+    // Mirrors WorldConfig.ItemIdentifier.isLegacyIdentity: default components only whole-item dumps contain.
+    // Only checked in unversioned files, since a mask may be configured to include them
+    private static final List<String> LEGACY_MARKERS = List.of("minecraft:max_stack_size", "minecraft:rarity");
+
+    private enum Command {
+        VALIDATE(false),
+        DEDUPE(true),
+        CONVERT(true),
+        NORMALIZE(true),
+        MIGRATE(true);
+
+        private final boolean writes;
+
+        Command(boolean writes) {
+            this.writes = writes;
+        }
+    }
+
+    /**
+     * One rule entry as stored on disk. Mirrors the serialized form and the equality of
+     * WorldConfig.ItemIdentifier: only the fields the match mode compares make rules equal.
+     */
+    private static final class Rule {
+        private static final Comparator<Rule> ORDER = Comparator
+                .comparing((Rule rule) -> rule.registryId, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(rule -> rule.name, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(rule -> rule.componentsJson, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Rule::mode);
+
+        private final String registryId;
+        private final String name;
+        private final String componentsJson;
+        // Null means exact, as in files written before match modes
+        private final String match;
+
+        private Rule(String registryId, String name, String componentsJson, String match) {
+            this.registryId = registryId;
+            this.name = name;
+            this.componentsJson = componentsJson;
+            this.match = match;
+        }
+
+        private String mode() {
+            return match != null ? match : "exact";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Rule)) return false;
+            Rule that = (Rule) o;
+            if (!mode().equals(that.mode()) || !Objects.equals(registryId, that.registryId)) {
+                return false;
+            }
+            return switch (mode()) {
+                case "registry" -> true;
+                case "name" -> Objects.equals(name, that.name);
+                default -> Objects.equals(name, that.name) && Objects.equals(componentsJson, that.componentsJson);
+            };
+        }
+
+        @Override
+        public int hashCode() {
+            return switch (mode()) {
+                case "registry" -> Objects.hash(mode(), registryId);
+                case "name" -> Objects.hash(mode(), registryId, name);
+                default -> Objects.hash(mode(), registryId, name, componentsJson);
+            };
+        }
+    }
+
+    /**
+     * Parsed content of one rule file. Fields other than the rule lists are kept as trees.
+     */
+    private static final class LayerFile {
+        private boolean legacy;
+        // Format version from the "version" field, 0 if the file has none
+        private int version;
+        private List<Rule> forbidden = new ArrayList<>();
+        // Null when the file has no "allowed" key, so it is not added on rewrite
+        private List<Rule> allowed;
+        private final Map<String, JsonElement> otherFields = new LinkedHashMap<>();
+        // CRC32 of the bytes read, to detect changes made before the file is rewritten
+        private long checksum;
+    }
+
+    /**
+     * Outcome of processing one file.
+     */
+    private static final class FileReport {
+        private final Path file;
+        private final List<String> errors = new ArrayList<>();
+        private final List<String> warnings = new ArrayList<>();
+        private long bytes;
+        private boolean legacy;
+        private int forbidden;
+        private int allowed;
+        private int duplicates;
+        // Legacy exact rules found, or converted by migrate
+        private int legacyRules;
+        private boolean changed;
+        private boolean written;
+        private long nanos;
+
+        private FileReport(Path file) {
+            this.file = file;
+        }
+    }
+
+    private RuleFileTool() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Runs the tool and returns the process exit code:
+     * 0 on success, 1 if any file had errors, 2 on bad usage.
+     */
+    static int run(String[] args) {
+        if (args.length == 0) {
+            printUsage();
+            return 2;
+        }
+        Command command;
+        try {
+            command = Command.valueOf(args[0].toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown command: " + args[0]);
+            printUsage();
+            return 2;
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean dryRun = false;
+        List<Path> roots = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--dry-run")) {
+                dryRun = true;
+            } else if (arg.equals("--threads") && i + 1 < args.length) {
+                try {
+                    threads = Math.max(1, Integer.parseInt(args[++i]));
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid thread count: " + args[i]);
+                    return 2;
+                }
+            } else if (arg.startsWith("--")) {
+                System.err.println("Unknown option: " + arg);
+                printUsage();
+                return 2;
+            } else {
+                roots.add(Paths.get(arg));
+            }
+        }
+        if (roots.isEmpty()) {
+            roots.add(DEFAULT_PATH);
+        }
+
+        List<Path> files;
+        try {
+            files = collectFiles(roots);
+        } catch (IOException e) {
+            System.err.println("Could not list rule files: " + e);
+            return 2;
+        }
+        if (files.isEmpty()) {
+            System.err.println("No rule files found under " + roots);
+            return 0;
+        }
+
+        return processAll(files, command, dryRun, Math.min(threads, files.size()));
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: RuleFileTool <validate|dedupe|normalize|convert|migrate> [--threads N] [--dry-run] [path...]");
+        System.err.println("  Paths may be rule files or directories; defaults to " + DEFAULT_PATH);
+    }
+
+    private static List<Path> collectFiles(List<Path> roots) throws IOException {
+        // Sorted and de-duplicated, so overlapping arguments do not process a file twice
+        TreeSet<Path> files = new TreeSet<>();
+        for (Path root : roots) {
+            if (Files.isDirectory(root)) {
+                try (Stream<Path> walk = Files.walk(root)) {
+                    walk.filter(Files::isRegularFile)
+                            .filter(path -> path.getFileName().toString().endsWith(".json"))
+                            .forEach(path -> files.add(path.toAbsolutePath().normalize()));
+                }
+            } else if (Files.isRegularFile(root)) {
+                files.add(root.toAbsolutePath().normalize());
+            } else {
+                System.err.println("Skipping missing path: " + root);
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    private static int processAll(List<Path> files, Command command, boolean dryRun, int threads) {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ForbiddenBlocks-RuleTool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<FileReport> reports = new ArrayList<>(files.size());
+        try {
+            List<Callable<FileReport>> tasks = new ArrayList<>(files.size());
+            for (Path file : files) {
+                tasks.add(() -> process(file, command, dryRun));
+            }
+            for (Future<FileReport> future : executor.invokeAll(tasks)) {
+                reports.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted");
+            return 1;
+        } catch (ExecutionException e) {
+            System.err.println("Unexpected failure: " + e.getCause());
+            return 1;
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long bytes = 0;
+        long rules = 0;
+        int duplicates = 0;
+        int legacyRules = 0;
+        int written = 0;
+        int failed = 0;
+        for (FileReport report : reports) {
+            printReport(report, command, dryRun);
+            bytes += report.bytes;
+            rules += report.forbidden + report.allowed;
+            duplicates += report.duplicates;
+            legacyRules += report.legacyRules;
+            if (report.written) {
+                written++;
+            }
+            if (!report.errors.isEmpty()) {
+                failed++;
+            }
+        }
+
+        double seconds = Math.max(elapsed, 1) / 1_000_000_000.0;
+        System.out.printf(Locale.ROOT, "%d files, %d rules, %d duplicates, %d legacy rules, %d written, %d with errors%n",
+                reports.size(), rules, duplicates, legacyRules, written, failed);
+        System.out.printf(Locale.ROOT, "%.1f ms on %d threads: %.0f files/s, %.0f rules/s, %.2f MB/s%n",
+                elapsed / 1_000_000.0, threads, reports.size() / seconds, rules / seconds,
+                bytes / seconds / (1024 * 1024));
+        return failed > 0 ? 1 : 0;
+    }
+
+    private static void printReport(FileReport report, Command command, boolean dryRun) {
+        StringBuilder line = new StringBuilder();
+        line.append(report.file).append(": ");
+        if (!report.errors.isEmpty()) {
+            line.append("ERROR");
+        } else {
+            line.append(report.forbidden).append(" forbidden, ").append(report.allowed).append(" allowed");
+            if (report.legacy) {
+                line.append(", legacy format");
+            }
+            if (report.duplicates > 0) {
+                line.append(", ").append(report.duplicates).append(" duplicates");
+            }
+            if (report.legacyRules > 0) {
+                line.append(", ").append(report.legacyRules)
+                        .append(command == Command.MIGRATE ? " legacy rules migrated" : " legacy rules (run migrate)");
+            }
+            if (command.writes) {
+                if (!report.changed) {
+                    line.append(", unchanged");
+                } else {
+                    line.append(dryRun ? ", would rewrite" : ", rewritten");
+                }
+            }
+        }
+        line.append(String.format(Locale.ROOT, " [%d B, %.2f ms]", report.bytes, report.nanos / 1_000_000.0));
+        System.out.println(line);
+        for (String error : report.errors) {
+            System.out.println("    error: " + error);
+        }
+        for (String warning : report.warnings) {
+            System.out.println("    warning: " + warning);
+        }
+    }
+
+    /**
+     * Reads, checks and (for writing commands) rewrites one file.
+     */
+    private static FileReport process(Path file, Command command, boolean dryRun) {
+        FileReport report = new FileReport(file);
+        long start = System.nanoTime();
+        try {
+            report.bytes = Files.size(file);
+            LayerFile layer = read(file, report);
+            if (layer != null) {
+                report.legacy = layer.legacy;
+                validateOtherFields(layer, report);
+                if (command != Command.MIGRATE && layer.version < FORMAT_VERSION) {
+                    report.legacyRules = countLegacyRules(layer.forbidden) + countLegacyRules(layer.allowed);
+                }
+                if (command.writes && report.errors.isEmpty()) {
+                    report.changed = transform(layer, command, report);
+                    if (report.changed && !dryRun) {
+                        report.written = write(file, layer, command == Command.DEDUPE && layer.legacy, report);
+                    }
+                } else {
+                    countDuplicates(layer, report);
+                }
+                report.forbidden = layer.forbidden.size();
+                report.allowed = layer.allowed != null ? layer.allowed.size() : 0;
+            }
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            report.errors.add("Could not process file: " + e.getMessage());
+        }
+        report.nanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private static LayerFile read(Path file, FileReport report) throws IOException {
+        CRC32 checksum = new CRC32();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new CheckedInputStream(Files.newInputStream(file), checksum), StandardCharsets.UTF_8));
+             JsonReader reader = new JsonReader(in)) {
+            LayerFile layer = new LayerFile();
+            JsonToken token = reader.peek();
+            if (token == JsonToken.BEGIN_ARRAY) {
+                layer.legacy = true;
+                readRules(reader, layer.forbidden, "forbidden", report);
+            } else if (token == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    if (field.equals("forbidden")) {
+                        readRules(reader, layer.forbidden, field, report);
+                    } else if (field.equals("allowed")) {
+                        layer.allowed = new ArrayList<>();
+                        readRules(reader, layer.allowed, field, report);
+                    } else {
+                        layer.otherFields.put(field, JsonParser.parseReader(reader));
+                    }
+                }
+                reader.endObject();
+            } else {
+                report.errors.add("Expected a rule object or array, found " + token);
+                return null;
+            }
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                report.errors.add("Unexpected content after the rules");
+            }
+            layer.checksum = checksum.getValue();
+            return layer;
+        }
+    }
+
+    private static void readRules(JsonReader reader, List<Rule> rules, String list, FileReport report)
+            throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return;
+        }
+        reader.beginArray();
+        int index = 0;
+        while (reader.hasNext()) {
+            Rule rule = readRule(reader, list + "[" + index + "]", report);
+            if (rule != null) {
+                rules.add(rule);
+            }
+            index++;
+        }
+        reader.endArray();
+    }
+
+    private static Rule readRule(JsonReader reader, String where, FileReport report) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            report.errors.add(where + ": expected an object, found " + reader.peek());
+            reader.skipValue();
+            return null;
+        }
+        String registryId = null;
+        String name = null;
+        String componentsJson = null;
+        String match = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            switch (field) {
+                case "registryId" -> registryId = readString(reader);
+                case "name" -> name = readString(reader);
+                case "componentsJson" -> componentsJson = readString(reader);
+                case "match" -> match = readString(reader);
+                default -> {
+                    report.warnings.add(where + ": unknown field '" + field + "'");
+                    reader.skipValue();
+                }
+            }
+        }
+        reader.endObject();
+        validateRule(registryId, componentsJson, match, where, report);
+        // The mod stores exact rules without a mode, so both spellings are the same rule
+        return new Rule(registryId, name, componentsJson, "exact".equals(match) ? null : match);
+    }
+
+    private static String readString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static void validateRule(String registryId, String componentsJson, String match, String where,
+            FileReport report) {
+        if (registryId == null || registryId.isBlank()) {
+            report.errors.add(where + ": missing registryId");
+        } else if (!REGISTRY_ID.matcher(registryId).matches()) {
+            report.errors.add(where + ": invalid registryId '" + registryId + "'");
+        }
+        if (match != null && !MATCH_MODES.contains(match)) {
+            report.errors.add(where + ": invalid match '" + match + "', expected registry, name or exact");
+        }
+        if (componentsJson != null && !componentsJson.isEmpty()) {
+            try {
+                JsonParser.parseString(componentsJson);
+            } catch (JsonParseException e) {
+                report.warnings.add(where + ": componentsJson is not valid JSON");
+            }
+        }
+    }
+
+    /**
+     * Checks the fields kept as trees: the identity component list and the zones.
+     */
+    private static void validateOtherFields(LayerFile layer, FileReport report) {
+        for (Map.Entry<String, JsonElement> field : layer.otherFields.entrySet()) {
+            JsonElement value = field.getValue();
+            switch (field.getKey()) {
+                case "version" -> {
+                    if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isNumber()) {
+                        layer.version = value.getAsInt();
+                    } else {
+                        report.errors.add("version: expected a number");
+                    }
+                }
+                case "identityComponents" -> {
+                    if (!value.isJsonNull() && !value.isJsonArray()) {
+                        report.errors.add("identityComponents: expected an array of component IDs");
+                    }
+                }
+                case "zones" -> {
+                    if (value.isJsonNull()) {
+                        continue;
+                    }
+                    if (!value.isJsonArray()) {
+                        report.errors.add("zones: expected an array");
+                        continue;
+                    }
+                    JsonArray zones = value.getAsJsonArray();
+                    for (int i = 0; i < zones.size(); i++) {
+                        validateZone(zones.get(i), "zones[" + i + "]", report);
+                    }
+                }
+                default -> report.warnings.add("unknown top-level field '" + field.getKey() + "'");
+            }
+        }
+    }
+
+    private static void validateZone(JsonElement element, String where, FileReport report) {
+        if (!element.isJsonObject()) {
+            report.errors.add(where + ": expected an object");
+            return;
+        }
+        JsonObject zone = element.getAsJsonObject();
+        JsonElement dimension = zone.get("dimension");
+        if (dimension == null || !dimension.isJsonPrimitive()
+                || !REGISTRY_ID.matcher(dimension.getAsString()).matches()) {
+            report.errors.add(where + ": missing or invalid dimension");
+        }
+        for (String corner : new String[]{"min", "max"}) {
+            JsonElement value = zone.get(corner);
+            if (value == null || !value.isJsonArray() || value.getAsJsonArray().size() != 3) {
+                report.errors.add(where + ": '" + corner + "' must be an array of three block coordinates");
+            }
+        }
+        JsonElement items = zone.get("items");
+        if (items != null && !items.isJsonNull()) {
+            if (!items.isJsonArray()) {
+                report.errors.add(where + ".items: expected an array");
+                return;
+            }
+            JsonArray array = items.getAsJsonArray();
+            for (int i = 0; i < array.size(); i++) {
+                JsonElement item = array.get(i);
+                String itemWhere = where + ".items[" + i + "]";
+                if (!item.isJsonObject()) {
+                    report.errors.add(itemWhere + ": expected an object");
+                    continue;
+                }
+                JsonElement registryId = item.getAsJsonObject().get("registryId");
+                JsonElement componentsJson = item.getAsJsonObject().get("componentsJson");
+                JsonElement match = item.getAsJsonObject().get("match");
+                validateRule(stringOrNull(registryId), stringOrNull(componentsJson), stringOrNull(match), itemWhere, report);
+            }
+        }
+    }
+
+    private static String stringOrNull(JsonElement element) {
+        return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+    }
+
+    /**
+     * Applies the command to the parsed file.
+     *
+     * @return true if the file content changed
+     */
+    private static boolean transform(LayerFile layer, Command command, FileReport report) {
+        boolean changed = false;
+        if (command == Command.CONVERT || command == Command.NORMALIZE) {
+            changed |= layer.legacy;
+        }
+        if (command == Command.MIGRATE && layer.version < FORMAT_VERSION) {
+            report.legacyRules = migrateLegacyRules(layer.forbidden) + migrateLegacyRules(layer.allowed);
+            // The remaining exact rules are current, so later runs and the mod must not re-detect them
+            layer.version = FORMAT_VERSION;
+            layer.otherFields.put("version", new JsonPrimitive(FORMAT_VERSION));
+            changed = true;
+        }
+        if (command == Command.NORMALIZE) {
+            // Canonical component JSON first, so entries differing only in key order become duplicates
+            changed |= canonicalizeComponents(layer.forbidden);
+            if (layer.allowed != null) {
+                changed |= canonicalizeComponents(layer.allowed);
+            }
+        }
+        if (command == Command.DEDUPE || command == Command.NORMALIZE) {
+            int before = report.duplicates;
+            layer.forbidden = dedupe(layer.forbidden, report);
+            if (layer.allowed != null) {
+                layer.allowed = dedupe(layer.allowed, report);
+            }
+            changed |= report.duplicates != before;
+        } else {
+            countDuplicates(layer, report);
+        }
+        if (command == Command.NORMALIZE) {
+            changed |= sort(layer.forbidden);
+            if (layer.allowed != null) {
+                changed |= sort(layer.allowed);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Checks whether the rule is an exact rule saved before identities were built from the
+     * component mask. Those stored every component of the item, so the mod can no longer match them.
+     * Callers only ask for files without a format version.
+     */
+    private static boolean isLegacyRule(Rule rule) {
+        if (rule.match != null || rule.componentsJson == null) {
+            return false;
+        }
+        try {
+            JsonElement root = JsonParser.parseString(rule.componentsJson);
+            if (!root.isJsonObject()) {
+                return false;
+            }
+            for (String marker : LEGACY_MARKERS) {
+                if (!root.getAsJsonObject().has(marker)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (JsonParseException e) {
+            return false;
+        }
+    }
+
+    private static int countLegacyRules(List<Rule> rules) {
+        int count = 0;
+        if (rules != null) {
+            for (Rule rule : rules) {
+                if (isLegacyRule(rule)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Replaces legacy exact rules with name rules for the same item and display name,
+     * or registry rules when no name was stored, as the mod does when it loads them.
+     *
+     * @return The number of rules replaced
+     */
+    private static int migrateLegacyRules(List<Rule> rules) {
+        int migrated = 0;
+        if (rules != null) {
+            for (int i = 0; i < rules.size(); i++) {
+                Rule rule = rules.get(i);
+                if (isLegacyRule(rule)) {
+                    rules.set(i, new Rule(rule.registryId, rule.name, null, rule.name != null ? "name" : "registry"));
+                    migrated++;
+                }
+            }
+        }
+        return migrated;
+    }
+
+    private static void countDuplicates(LayerFile layer, FileReport report) {
+        report.duplicates += layer.forbidden.size() - new LinkedHashSet<>(layer.forbidden).size();
+        if (layer.allowed != null) {
+            report.duplicates += layer.allowed.size() - new LinkedHashSet<>(layer.allowed).size();
+        }
+    }
+
+    private static List<Rule> dedupe(List<Rule> rules, FileReport report) {
+        LinkedHashSet<Rule> unique = new LinkedHashSet<>(rules);
+        report.duplicates += rules.size() - unique.size();
+        return new ArrayList<>(unique);
+    }
+
+    private static boolean sort(List<Rule> rules) {
+        List<Rule> before = new ArrayList<>(rules);
+        rules.sort(Rule.ORDER);
+        return !before.equals(rules);
+    }
+
+    private static boolean canonicalizeComponents(List<Rule> rules) {
+        boolean changed = false;
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            if (rule.componentsJson == null || rule.componentsJson.isEmpty()) {
+                continue;
+            }
+            String canonical;
+            try {
+                canonical = canonicalize(JsonParser.parseString(rule.componentsJson)).toString();
+            } catch (JsonParseException e) {
+                continue;
+            }
+            if (!canonical.equals(rule.componentsJson)) {
+                rules.set(i, new Rule(rule.registryId, rule.name, canonical, rule.match));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns a copy of the element with all object keys sorted recursively,
+     * matching the component JSON the mod writes for new rules.
+     */
+    private static JsonElement canonicalize(JsonElement element) {
+        if (element.isJsonObject()) {
+            JsonObject source = element.getAsJsonObject();
+            List<String> keys = new ArrayList<>(source.keySet());
+            Collections.sort(keys);
+            JsonObject sorted = new JsonObject();
+            for (String key : keys) {
+                sorted.add(key, canonicalize(source.get(key)));
+            }
+            return sorted;
+        }
+        if (element.isJsonArray()) {
+            JsonArray copy = new JsonArray();
+            for (JsonElement child : element.getAsJsonArray()) {
+                copy.add(canonicalize(child));
+            }
+            return copy;
+        }
+        return element;
+    }
+
+    /**
+     * Rewrites the file in place while holding the same exclusive lock the mod takes when it
+     * saves, so the game never reads a half-written file and a save in progress is never
+     * overwritten. The file is only written if it still holds the bytes that were read.
+     *
+     * @return true if the file was written; otherwise the reason is added to the report's errors
+     */
+    private static boolean write(Path file, LayerFile layer, boolean keepLegacy, FileReport report)
+            throws IOException {
+        ByteBuffer content = ByteBuffer.wrap(serialize(layer, keepLegacy).getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileLock lock = tryLock(channel)) {
+            if (lock == null) {
+                report.errors.add("Locked by a running game, not rewritten; try again once it has saved");
+                return false;
+            }
+            if (checksum(channel) != layer.checksum) {
+                report.errors.add("Changed while being processed, not rewritten; run again");
+                return false;
+            }
+            channel.truncate(0);
+            channel.position(0);
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(false);
+            return true;
+        }
+    }
+
+    /**
+     * Takes an exclusive lock on the whole file, retrying with growing pauses for up to
+     * LOCK_TIMEOUT_MILLIS, as the mod does.
+     *
+     * @return The lock, or null if it stayed held by another process or thread
+     */
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LOCK_TIMEOUT_MILLIS);
+        long pauseMillis = 5;
+        while (true) {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // Held through another channel in this process, e.g. the same file listed twice
+                lock = null;
+            }
+            if (lock != null) {
+                return lock;
+            }
+            if (System.nanoTime() >= deadline) {
+                return null;
+            }
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            pauseMillis = Math.min(pauseMillis * 2, 200);
+        }
+    }
+
+    private static long checksum(FileChannel channel) throws IOException {
+        CRC32 checksum = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        channel.position(0);
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            checksum.update(buffer);
+            buffer.clear();
+        }
+        return checksum.getValue();
+    }
+
+    /**
+     * Streams the layer into a string in the layered format, or as a bare array when
+     * a legacy file keeps its format.
+     */
+    private static String serialize(LayerFile layer, boolean keepLegacy) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.setIndent("  ");
+            if (keepLegacy) {
+                writeRules(writer, layer.forbidden);
+            } else {
+                writer.beginObject();
+                writer.name("forbidden");
+                writeRules(writer, layer.forbidden);
+                if (layer.allowed != null) {
+                    writer.name("allowed");
+                    writeRules(writer, layer.allowed);
+                }
+                for (Map.Entry<String, JsonElement> field : layer.otherFields.entrySet()) {
+                    writer.name(field.getKey());
+                    GSON.toJson(field.getValue(), writer);
+                }
+                writer.endObject();
+            }
+        }
+        return out.toString();
+    }
+
+    private static void writeRules(JsonWriter writer, List<Rule> rules) throws IOException {
+        writer.beginArray();
+        for (Rule rule : rules) {
+            writer.beginObject();
+            writeString(writer, "registryId", rule.registryId);
+            writeString(writer, "name", rule.name);
+            writeString(writer, "componentsJson", rule.componentsJson);
+            writeString(writer, "match", rule.match);
+            writer.endObject();
+        }
+        writer.endArray();
+    }
+
+    private static void writeString(JsonWriter writer, String name, String value) throws IOException {
+        if (value != null) {
+            writer.name(name).value(value);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package me.lucievol.forbiddenblocks.config;
+
+import com.mojang.serialization.Codec;
+import net.minecraft.component.ComponentType;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.Identifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The set of data component types that count toward an item's identity.
+ *
+ * Component IDs from the configuration are resolved once into an array of
+ * {@link ComponentType} references, so building an identifier only reads those
+ * components instead of walking the whole component registry. Each type's codec
+ * is resolved alongside it and reused for every identity that is built.
+ *
+ * Volatile components such as damage, repair cost or use cooldowns are left out
+ * of the default mask, so using a protected item does not change its identity.
+ *
+ * Instances are immutable and safe to share between threads.
+ */
+public final class ComponentMask {
+    private static final Logger LOGGER = LoggerFactory.getLogger("forbiddenblocks");
+
+    /**
+     * Components that identify an item by default: names, lore, enchantments and
+     * other data a player deliberately puts on an item.
+     */
+    public static final List<String> DEFAULT_COMPONENTS = List.of(
+            "minecraft:custom_name",
+            "minecraft:item_name",
+            "minecraft:lore",
+            "minecraft:enchantments",
+            "minecraft:stored_enchantments",
+            "minecraft:custom_data",
+            "minecraft:profile",
+            "minecraft:potion_contents",
+            "minecraft:fireworks",
+            "minecraft:firework_explosion",
+            "minecraft:trim",
+            "minecraft:dyed_color",
+            "minecraft:banner_patterns",
+            "minecraft:written_book_content");
+
+    // Sorted by component ID so identities are built in a stable order
+    private final ComponentType<?>[] types;
+    private final String[] ids;
+    private final Codec<Object>[] codecs;
+
+    private ComponentMask(ComponentType<?>[] types, String[] ids, Codec<Object>[] codecs) {
+        this.types = types;
+        this.ids = ids;
+        this.codecs = codecs;
+    }
+
+    /**
+     * Resolves a list of component IDs into a mask.
+     * Unknown IDs and transient components without a codec are logged and skipped.
+     *
+     * @param componentIds Component type IDs such as "minecraft:custom_name"
+     * @return The resolved mask, never null
+     */
+    @SuppressWarnings("unchecked")
+    public static ComponentMask resolve(List<String> componentIds) {
+        List<ComponentType<?>> resolvedTypes = new ArrayList<>();
+        List<String> resolvedIds = new ArrayList<>();
+        List<Codec<Object>> resolvedCodecs = new ArrayList<>();
+        if (componentIds != null) {
+            for (String componentId : new TreeSet<>(componentIds)) {
+                Identifier id = Identifier.tryParse(componentId.trim());
+                ComponentType<?> type = id != null ? Registries.DATA_COMPONENT_TYPE.get(id) : null;
+                if (type == null) {
+                    LOGGER.warn("Unknown component type '{}' in identity mask, skipping", componentId);
+                    continue;
+                }
+                Codec<?> codec = type.getCodec();
+                if (codec == null) {
+                    LOGGER.warn("Component type '{}' is not persistent and cannot be part of an identity, skipping", componentId);
+                    continue;
+                }
+                resolvedTypes.add(type);
+                resolvedIds.add(id.toString());
+                resolvedCodecs.add((Codec<Object>) codec);
+            }
+        }
+        LOGGER.debug("Resolved identity mask with {} component types: {}", resolvedIds.size(), resolvedIds);
+        return new ComponentMask(resolvedTypes.toArray(new ComponentType<?>[0]), resolvedIds.toArray(new String[0]),
+                resolvedCodecs.toArray(new Codec[0]));
+    }
+
+    /**
+     * Gets the number of component types in this mask.
+     *
+     * @return The mask size
+     */
+    public int size() {
+        return types.length;
+    }
+
+    /**
+     * Gets the component type at the given position.
+     *
+     * @param index Position in the mask
+     * @return The component type
+     */
+    public ComponentType<?> getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * Gets the component ID string at the given position, as used in identity JSON.
+     *
+     * @param index Position in the mask
+     * @return The component ID
+     */
+    public String getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Checks whether the mask includes the component with the given ID.
+     *
+     * @param componentId A component ID as used in identity JSON, such as "minecraft:lore"
+     * @return true if identities built from this mask can contain the component
+     */
+    public boolean contains(String componentId) {
+        for (String id : ids) {
+            if (id.equals(componentId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the codec of the component type at the given position.
+     *
+     * @param index Position in the mask
+     * @return The component's persistent codec
+     */
+    public Codec<Object> getCodec(int index) {
+        return codecs[index];
+    }
+}
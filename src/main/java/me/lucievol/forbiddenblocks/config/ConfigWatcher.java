@@ -0,0 +1,88 @@
+package me.lucievol.forbiddenblocks.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * Background watcher that picks up external edits to rule files.
+ *
+ * Watches the config directory (global.json) and the worlds directory with a
+ * {@link WatchService} on a single daemon thread. When a JSON file changes, the
+ * matching loaded {@link WorldConfig} re-reads it and applies only the entries that
+ * were added or removed, so live rules never go through an empty intermediate state.
+ *
+ * Writes made by this client also trigger events; they reload to an identical state
+ * and are no-ops.
+ */
+final class ConfigWatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger("forbiddenblocks");
+    private static final Object START_LOCK = new Object();
+    private static Thread thread = null;
+
+    private ConfigWatcher() {
+    }
+
+    /**
+     * Starts watching the given directories. Later calls are ignored.
+     *
+     * @param directories Directories containing rule files
+     */
+    static void start(Path... directories) {
+        synchronized (START_LOCK) {
+            if (thread != null) {
+                return;
+            }
+            try {
+                WatchService watchService = FileSystems.getDefault().newWatchService();
+                for (Path directory : directories) {
+                    Files.createDirectories(directory);
+                    directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY);
+                }
+                thread = new Thread(() -> run(watchService), "ForbiddenBlocks-ConfigWatcher");
+                thread.setDaemon(true);
+                thread.start();
+                LOGGER.info("Watching rule files for external changes");
+            } catch (IOException | UnsupportedOperationException e) {
+                LOGGER.warn("Could not start rule file watcher, external edits will be picked up on join only", e);
+            }
+        }
+    }
+
+    private static void run(WatchService watchService) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        WorldConfig.reloadAll();
+                        continue;
+                    }
+                    Path file = directory.resolve((Path) event.context());
+                    if (file.getFileName().toString().endsWith(".json")) {
+                        LOGGER.debug("Rule file changed on disk: {}", file);
+                        WorldConfig.onFileChanged(file);
+                    }
+                }
+                if (!key.reset()) {
+                    LOGGER.warn("Rule directory {} is no longer watchable", directory);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.error("Rule file watcher stopped unexpectedly", e);
+        }
+    }
+}
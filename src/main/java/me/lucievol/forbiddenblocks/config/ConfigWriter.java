@@ -0,0 +1,69 @@
+package me.lucievol.forbiddenblocks.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background thread that writes rule changes to disk.
+ *
+ * Toggling or removing a rule updates the in-memory layer right away on the calling
+ * thread, usually the render thread, and queues the layer here. Writing needs the file's
+ * exclusive lock, which another client instance sharing the config directory may hold;
+ * waiting for it here keeps the game responsive.
+ *
+ * Key Features:
+ * - A single daemon thread, so writes to the same file never race each other
+ * - A layer already waiting to be written is queued only once
+ * - Work that finds a file locked for too long is retried later instead of blocking
+ */
+final class ConfigWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger("forbiddenblocks");
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ForbiddenBlocks-ConfigWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Layers with a flush queued but not yet started
+    private static final Set<WorldConfig> QUEUED = ConcurrentHashMap.newKeySet();
+
+    private ConfigWriter() {
+    }
+
+    /**
+     * Queues a write of the layer's pending changes, unless one is already queued.
+     *
+     * @param layer The layer to write
+     * @param delayMillis How long to wait before writing
+     */
+    static void scheduleFlush(WorldConfig layer, long delayMillis) {
+        if (QUEUED.add(layer)) {
+            schedule(() -> {
+                // Changes made while this flush runs queue another one
+                QUEUED.remove(layer);
+                layer.flush();
+            }, delayMillis);
+        }
+    }
+
+    /**
+     * Runs a task on the writer thread.
+     *
+     * @param task The task to run
+     * @param delayMillis How long to wait before running it
+     */
+    static void schedule(Runnable task, long delayMillis) {
+        EXECUTOR.schedule(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                LOGGER.error("Rule file task failed", e);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,110 @@
+package me.lucievol.forbiddenblocks.config;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.entity.decoration.ItemFrameEntity;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.Identifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decides, per {@link EntityType}, whether interacting with an entity while holding
+ * a forbidden item in the main hand is allowed.
+ *
+ * The table is an array indexed by the entity type's raw registry ID. Entries from the
+ * configuration are filled in when the table is built; every other type is resolved
+ * from the first entity of that type that is seen and cached, so each later check is a
+ * single array read.
+ *
+ * Configuration entries have the form "namespace:entity_type=allow|block", for example
+ * "minecraft:armor_stand=block" or "minecraft:cow=allow".
+ *
+ * Default policy (matching previous behavior):
+ * - Item frames and living entities (villagers, animals, armor stands, ...) are allowed
+ * - Everything else (boats, minecarts, ...) is blocked
+ */
+public final class EntityPolicyTable {
+    private static final Logger LOGGER = LoggerFactory.getLogger("forbiddenblocks");
+
+    public enum Policy {
+        UNRESOLVED,
+        ALLOW,
+        BLOCK
+    }
+
+    // Indexed by raw entity type ID; written at most once per slot, races only repeat the same write
+    private final Policy[] policies;
+
+    private EntityPolicyTable(Policy[] policies) {
+        this.policies = policies;
+    }
+
+    /**
+     * Builds a table from configuration entries.
+     * Malformed entries and unknown entity types are logged and skipped.
+     *
+     * @param entries Entries of the form "namespace:entity_type=allow|block"
+     * @return The policy table, never null
+     */
+    public static EntityPolicyTable build(List<String> entries) {
+        Policy[] policies = new Policy[Registries.ENTITY_TYPE.size()];
+        Arrays.fill(policies, Policy.UNRESOLVED);
+        if (entries != null) {
+            for (String entry : entries) {
+                int separator = entry.indexOf('=');
+                if (separator < 0) {
+                    LOGGER.warn("Malformed entity policy '{}', expected 'entity_type=allow|block'", entry);
+                    continue;
+                }
+                Identifier id = Identifier.tryParse(entry.substring(0, separator).trim());
+                if (id == null || !Registries.ENTITY_TYPE.containsId(id)) {
+                    LOGGER.warn("Unknown entity type in policy '{}', skipping", entry);
+                    continue;
+                }
+                Policy policy;
+                try {
+                    policy = Policy.valueOf(entry.substring(separator + 1).trim().toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    LOGGER.warn("Unknown policy in entity policy '{}', expected allow or block", entry);
+                    continue;
+                }
+                if (policy == Policy.UNRESOLVED) {
+                    continue;
+                }
+                policies[Registries.ENTITY_TYPE.getRawId(Registries.ENTITY_TYPE.get(id))] = policy;
+            }
+        }
+        LOGGER.debug("Built entity policy table for {} entity types", policies.length);
+        return new EntityPolicyTable(policies);
+    }
+
+    /**
+     * Gets the policy for the given entity, resolving and caching the default for its type
+     * on first encounter.
+     *
+     * @param entity The entity being interacted with
+     * @return ALLOW or BLOCK
+     */
+    public Policy get(Entity entity) {
+        int rawId = Registries.ENTITY_TYPE.getRawId(entity.getType());
+        if (rawId < 0 || rawId >= policies.length) {
+            return defaultPolicy(entity);
+        }
+        Policy policy = policies[rawId];
+        if (policy == Policy.UNRESOLVED) {
+            policy = defaultPolicy(entity);
+            policies[rawId] = policy;
+        }
+        return policy;
+    }
+
+    private static Policy defaultPolicy(Entity entity) {
+        return entity instanceof ItemFrameEntity || entity instanceof LivingEntity ? Policy.ALLOW : Policy.BLOCK;
+    }
+}
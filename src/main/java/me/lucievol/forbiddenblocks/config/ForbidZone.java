@@ -0,0 +1,95 @@
+package me.lucievol.forbiddenblocks.config;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A box in one dimension inside which placement rules apply.
+ * 
+ * Zones are stored in a world file under "zones", for example:
+ * {"name": "base", "dimension": "minecraft:overworld", "min": [0, -64, 0], "max": [100, 320, 100], "items": []}
+ * 
+ * Both corners are inclusive block coordinates. An empty (or missing) item list forbids
+ * placing any block inside the zone; otherwise only the listed items are forbidden there.
+ */
+public class ForbidZone {
+    private String name;
+    private String dimension;
+    private int[] min;
+    private int[] max;
+    private List<WorldConfig.ItemIdentifier> items;
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDimension() {
+        return dimension;
+    }
+
+    public List<WorldConfig.ItemIdentifier> getItems() {
+        return items != null ? items : List.of();
+    }
+
+    /**
+     * Checks that the zone has a dimension and two three-element corners.
+     * 
+     * @return true if the zone can be indexed
+     */
+    public boolean isValid() {
+        return dimension != null && min != null && max != null && min.length == 3 && max.length == 3;
+    }
+
+    public int getMinX() {
+        return Math.min(min[0], max[0]);
+    }
+
+    public int getMinY() {
+        return Math.min(min[1], max[1]);
+    }
+
+    public int getMinZ() {
+        return Math.min(min[2], max[2]);
+    }
+
+    public int getMaxX() {
+        return Math.max(min[0], max[0]);
+    }
+
+    public int getMaxY() {
+        return Math.max(min[1], max[1]);
+    }
+
+    public int getMaxZ() {
+        return Math.max(min[2], max[2]);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ForbidZone that = (ForbidZone) o;
+        return Objects.equals(name, that.name) &&
+                Objects.equals(dimension, that.dimension) &&
+                Arrays.equals(min, that.min) &&
+                Arrays.equals(max, that.max) &&
+                Objects.equals(getItems(), that.getItems());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, dimension, Arrays.hashCode(min), Arrays.hashCode(max), getItems());
+    }
+
+    @Override
+    public String toString() {
+        return "ForbidZone{" +
+                "name='" + name + '\'' +
+                ", dimension='" + dimension + '\'' +
+                ", min=" + Arrays.toString(min) +
+                ", max=" + Arrays.toString(max) +
+                ", items=" + getItems().size() +
+                '}';
+    }
+}
@@ -3,14 +3,21 @@ package me.lucievol.forbiddenblocks.config;
 import me.shedaniel.autoconfig.AutoConfig;
 import me.shedaniel.autoconfig.ConfigData;
 import me.shedaniel.autoconfig.annotation.Config;
+import me.shedaniel.autoconfig.serializer.ConfigSerializer;
 import me.shedaniel.autoconfig.serializer.Toml4jConfigSerializer;
 import me.shedaniel.clothconfig2.api.ConfigBuilder;
 import me.shedaniel.clothconfig2.api.ConfigCategory;
 import me.shedaniel.clothconfig2.api.ConfigEntryBuilder;
+import net.fabricmc.fabric.api.client.screen.v1.Screens;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gui.widget.ButtonWidget;
 import net.minecraft.text.Text;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Global configuration manager for the ForbiddenBlocks mod.
  * 
@@ -20,12 +27,20 @@ import org.slf4j.LoggerFactory;
  * 
  * Key Features:
  * - Persistent configuration using TOML format
+ * - Lazy registration on first access, keeping it off the game launch path
  * - Automatic configuration file management
  * - Integration with ModMenu for UI
  * - Thread-safe configuration access
  * 
+ * The configuration screen also links to the {@link RuleBrowserScreen} for reviewing
+ * and removing the rules of the current world.
+ * 
  * Global Settings:
  * - Message Visibility: Controls whether feedback messages are shown to players
+ * - Identity Components: Which item components count toward an item's identity
+ * - Entity Policies: Which entity types may be used while holding a forbidden item
+ * - Protect Container Contents: Whether containers holding forbidden items may be placed
+ * - Default Match Mode: How much of an item's identity new rules compare
  * 
  * Note: World-specific settings (forbidden blocks list) are handled by {@link WorldConfig}
  */
@@ -40,27 +55,82 @@ public class ForbiddenBlocksConfig implements ConfigData {
      */
     private boolean showMessages = true;
 
+    /**
+     * Component type IDs that count toward an item's identity.
+     * World files may override this with their own "identityComponents" list.
+     */
+    private List<String> identityComponents = new ArrayList<>(ComponentMask.DEFAULT_COMPONENTS);
+
+    // Resolved form of identityComponents, rebuilt after the list changes
+    private transient volatile ComponentMask identityMask;
+
+    /**
+     * Per-entity-type overrides for interacting with entities while holding a forbidden item,
+     * as "namespace:entity_type=allow|block" entries.
+     */
+    private List<String> entityPolicies = new ArrayList<>();
+
+    // Resolved form of entityPolicies, rebuilt after the list changes
+    private transient volatile EntityPolicyTable entityPolicyTable;
+
+    /**
+     * Forbids placing container items (shulker boxes, bundles, ...) whose contents,
+     * at any depth, include a forbidden item.
+     */
+    private boolean protectContainerContents = false;
+
+    /**
+     * Match mode given to rules created with the toggle keys: "registry", "name" or "exact".
+     */
+    private String defaultMatchMode = "exact";
+
+    // Set once AutoConfig registration has been attempted, see init()
+    private static volatile boolean initialized = false;
+
     /**
      * Initializes the configuration system.
-     * Must be called during mod initialization before any config access.
+     * Called automatically on first config access, so the TOML file is not read
+     * during game launch. Safe to call more than once.
      * Sets up AutoConfig with TOML serialization.
      */
     public static void init() {
-        try {
-            AutoConfig.register(ForbiddenBlocksConfig.class, Toml4jConfigSerializer::new);
-            LOGGER.info("ForbiddenBlocks config system initialized");
-        } catch (Exception e) {
-            LOGGER.error("Failed to initialize config system", e);
+        init(Toml4jConfigSerializer::new);
+    }
+
+    /**
+     * Initializes the configuration system with the given serializer instead of TOML in
+     * the game's config directory. Tests use this to keep the config file out of the working
+     * directory. Has no effect once the config system is initialized.
+     * 
+     * @param serializer Creates the serializer that reads and writes the config
+     */
+    public static void init(ConfigSerializer.Factory<ForbiddenBlocksConfig> serializer) {
+        if (initialized) {
+            return;
+        }
+        synchronized (ForbiddenBlocksConfig.class) {
+            if (initialized) {
+                return;
+            }
+            try {
+                AutoConfig.register(ForbiddenBlocksConfig.class, serializer);
+                LOGGER.info("ForbiddenBlocks config system initialized");
+            } catch (Exception e) {
+                LOGGER.error("Failed to initialize config system", e);
+            } finally {
+                initialized = true;
+            }
         }
     }
 
     /**
-     * Gets the current configuration instance.
+     * Gets the current configuration instance, registering the config system on first use.
      * Thread-safe access to the global configuration.
      * 
      * @return The current global configuration instance
      */
     public static ForbiddenBlocksConfig get() {
+        init();
         try {
             return AutoConfig.getConfigHolder(ForbiddenBlocksConfig.class).getConfig();
         } catch (Exception e) {
@@ -79,6 +149,52 @@ public class ForbiddenBlocksConfig implements ConfigData {
         return showMessages;
     }
 
+    /**
+     * Checks if containers holding forbidden items should be treated as forbidden.
+     * 
+     * @return true if container contents are protected, false otherwise
+     */
+    public boolean shouldProtectContainerContents() {
+        return protectContainerContents;
+    }
+
+    /**
+     * Gets the match mode for newly created rules.
+     * 
+     * @return The configured mode, EXACT if unset or unknown
+     */
+    public MatchMode getDefaultMatchMode() {
+        return MatchMode.parse(defaultMatchMode);
+    }
+
+    /**
+     * Gets the global component identity mask, resolving it on first use.
+     * 
+     * @return The resolved mask for identityComponents
+     */
+    public ComponentMask getIdentityMask() {
+        ComponentMask mask = identityMask;
+        if (mask == null) {
+            mask = ComponentMask.resolve(identityComponents);
+            identityMask = mask;
+        }
+        return mask;
+    }
+
+    /**
+     * Gets the entity interaction policy table, building it on first use.
+     * 
+     * @return The policy table for entityPolicies
+     */
+    public EntityPolicyTable getEntityPolicies() {
+        EntityPolicyTable table = entityPolicyTable;
+        if (table == null) {
+            table = EntityPolicyTable.build(entityPolicies);
+            entityPolicyTable = table;
+        }
+        return table;
+    }
+
     /**
      * Toggles whether status messages are shown.
      * Automatically saves the configuration after toggling.
@@ -113,6 +229,9 @@ public class ForbiddenBlocksConfig implements ConfigData {
      * 
      * Features:
      * - Message visibility toggle with tooltip
+     * - Container content protection toggle
+     * - Default match mode selector for new rules
+     * - "Browse Rules" button opening the {@link RuleBrowserScreen}
      * - Automatic saving of changes
      * - Clean, user-friendly interface
      * 
@@ -138,6 +257,57 @@ public class ForbiddenBlocksConfig implements ConfigData {
                     })
                     .build());
 
+            // Treat containers holding forbidden items as forbidden themselves
+            general.addEntry(entryBuilder.startBooleanToggle(Text.of("Protect Container Contents"), get().protectContainerContents)
+                    .setDefaultValue(false)
+                    .setTooltip(Text.of("Block placing shulker boxes, bundles and other containers that hold a forbidden item"))
+                    .setSaveConsumer(value -> {
+                        get().protectContainerContents = value;
+                        saveConfig();
+                    })
+                    .build());
+
+            // How much of an item's identity new rules compare
+            general.addEntry(entryBuilder.startEnumSelector(Text.of("Default Match Mode"), MatchMode.class, get().getDefaultMatchMode())
+                    .setDefaultValue(MatchMode.EXACT)
+                    .setTooltip(Text.of("REGISTRY matches every item of the type, NAME also compares the display name, EXACT compares the identity components too. Applies to rules created from now on."))
+                    .setSaveConsumer(value -> {
+                        get().defaultMatchMode = value.name().toLowerCase(java.util.Locale.ROOT);
+                        saveConfig();
+                    })
+                    .build());
+
+            // Component types that make up an item's identity
+            general.addEntry(entryBuilder.startStrList(Text.of("Identity Components"), new ArrayList<>(get().identityComponents))
+                    .setDefaultValue(new ArrayList<>(ComponentMask.DEFAULT_COMPONENTS))
+                    .setTooltip(Text.of("Item components that must match for a rule to apply. Volatile ones like damage are best left out."))
+                    .setSaveConsumer(value -> {
+                        ForbiddenBlocksConfig config = get();
+                        config.identityComponents = new ArrayList<>(value);
+                        config.identityMask = null;
+                        saveConfig();
+                    })
+                    .build());
+
+            // Entity types that may or may not be used while holding a forbidden item
+            general.addEntry(entryBuilder.startStrList(Text.of("Entity Policies"), new ArrayList<>(get().entityPolicies))
+                    .setDefaultValue(new ArrayList<>())
+                    .setTooltip(Text.of("Entries like minecraft:armor_stand=block or minecraft:cow=allow. Unlisted living entities and item frames are allowed."))
+                    .setSaveConsumer(value -> {
+                        ForbiddenBlocksConfig config = get();
+                        config.entityPolicies = new ArrayList<>(value);
+                        config.entityPolicyTable = null;
+                        saveConfig();
+                    })
+                    .build());
+
+            // Add a button for the rule browser once the screen has been laid out
+            builder.setAfterInitConsumer(screen -> Screens.getButtons(screen).add(
+                    ButtonWidget.builder(Text.of("Browse Rules"),
+                                    button -> MinecraftClient.getInstance().setScreen(new RuleBrowserScreen(screen)))
+                            .dimensions(6, screen.height - 26, 100, 20)
+                            .build()));
+
             return builder.build();
         } catch (Exception e) {
             LOGGER.error("Error creating config screen", e);
@@ -154,6 +324,17 @@ public class ForbiddenBlocksConfig implements ConfigData {
     public void validatePostLoad() throws ValidationException {
         // Basic validation only for now
         // Future versions may add more complex validation
+        if (identityComponents == null) {
+            identityComponents = new ArrayList<>(ComponentMask.DEFAULT_COMPONENTS);
+        }
+        identityMask = null;
+        if (entityPolicies == null) {
+            entityPolicies = new ArrayList<>();
+        }
+        entityPolicyTable = null;
+        if (defaultMatchMode == null) {
+            defaultMatchMode = "exact";
+        }
         ConfigData.super.validatePostLoad();
     }
 }
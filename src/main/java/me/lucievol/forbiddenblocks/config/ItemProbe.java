@@ -0,0 +1,80 @@
+package me.lucievol.forbiddenblocks.config;
+
+import me.lucievol.forbiddenblocks.ItemIdentifierFactory;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+
+/**
+ * A stack being checked against rules, with the parts of its identity computed on demand.
+ *
+ * Registry rules only need the item, name rules also need the display name, and exact
+ * rules need the full component identity. The probe computes each part the first time a
+ * rule index asks for it and keeps it for the remaining lookups, so a check never builds
+ * more identity than the rules it meets require.
+ *
+ * Instances are mutable and meant to be reused through {@link #reset}; they are not
+ * thread-safe.
+ */
+public final class ItemProbe {
+    private ItemStack stack = ItemStack.EMPTY;
+    private ComponentMask mask;
+    private String name;
+    private WorldConfig.ItemIdentifier identity;
+    private boolean identityBuilt;
+
+    public ItemProbe() {
+    }
+
+    public ItemProbe(ItemStack stack, ComponentMask mask) {
+        reset(stack, mask);
+    }
+
+    /**
+     * Points the probe at another stack, dropping everything computed for the previous one.
+     *
+     * @param stack The stack to check
+     * @param mask The component mask used if a full identity is needed
+     */
+    public void reset(ItemStack stack, ComponentMask mask) {
+        this.stack = stack;
+        this.mask = mask;
+        this.name = null;
+        this.identity = null;
+        this.identityBuilt = false;
+    }
+
+    public ItemStack getStack() {
+        return stack;
+    }
+
+    public Item getItem() {
+        return stack.getItem();
+    }
+
+    /**
+     * Gets the stack's display name, computing it on first use.
+     *
+     * @return The display name
+     */
+    public String getName() {
+        String current = name;
+        if (current == null) {
+            current = stack.getName().getString();
+            name = current;
+        }
+        return current;
+    }
+
+    /**
+     * Gets the stack's full exact identity, building it on first use.
+     *
+     * @return The identity, or null if the stack cannot be identified
+     */
+    public WorldConfig.ItemIdentifier getIdentity() {
+        if (!identityBuilt) {
+            identity = ItemIdentifierFactory.create(stack, mask);
+            identityBuilt = true;
+        }
+        return identity;
+    }
+}
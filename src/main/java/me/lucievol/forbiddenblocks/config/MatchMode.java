@@ -0,0 +1,49 @@
+package me.lucievol.forbiddenblocks.config;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.Locale;
+
+/**
+ * How much of an item's identity a rule compares.
+ * 
+ * Stored per rule as "match": "registry" | "name" | "exact". Rules without the field
+ * are exact, which is how every rule behaved before match modes existed.
+ */
+public enum MatchMode {
+    /**
+     * Matches every item of the registry ID, whatever its name or components.
+     * Survives renaming in an anvil and any component change.
+     */
+    @SerializedName("registry")
+    REGISTRY,
+
+    /**
+     * Matches the registry ID and the display name, ignoring all other components.
+     */
+    @SerializedName("name")
+    NAME,
+
+    /**
+     * Matches the registry ID, display name and every component in the identity mask.
+     */
+    @SerializedName("exact")
+    EXACT;
+
+    /**
+     * Parses a mode name as written in the config, ignoring case.
+     * 
+     * @param value The mode name, such as "registry"
+     * @return The mode, or EXACT if the value is null or unknown
+     */
+    public static MatchMode parse(String value) {
+        if (value != null) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                // Fall through to the default
+            }
+        }
+        return EXACT;
+    }
+}
@@ -0,0 +1,222 @@
+package me.lucievol.forbiddenblocks.config;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.gui.screen.Screen;
+import net.minecraft.client.gui.widget.AlwaysSelectedEntryListWidget;
+import net.minecraft.client.gui.widget.ButtonWidget;
+import net.minecraft.client.gui.widget.TextFieldWidget;
+import net.minecraft.text.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * In-game browser for the rules of the current world and the global layer.
+ *
+ * Opened from the config screen. Rows are created once when the browser opens and
+ * searched through a {@link RuleSearchIndex}, so typing in the search box never
+ * rescans every rule. The list widget only draws the rows that are on screen,
+ * which keeps the browser at full frame rate with tens of thousands of rules.
+ *
+ * Removing a row deletes the rule from its layer and saves the file; the row is
+ * hidden from later searches without rebuilding the index.
+ */
+public class RuleBrowserScreen extends Screen {
+    private static final Logger LOGGER = LoggerFactory.getLogger("forbiddenblocks");
+    private static final int ROW_HEIGHT = 12;
+
+    private final Screen parent;
+    private final List<Row> rows = new ArrayList<>();
+    private RuleSearchIndex index;
+    private String query = "";
+
+    private TextFieldWidget searchField;
+    private RuleList list;
+    private ButtonWidget removeButton;
+
+    /**
+     * A rule together with the layer it belongs to.
+     */
+    private static final class Row {
+        private final WorldConfig layer;
+        private final WorldConfig.ItemIdentifier item;
+        private final Text label;
+        private boolean removed;
+
+        private Row(WorldConfig layer, WorldConfig.ItemIdentifier item) {
+            this.layer = layer;
+            this.item = item;
+            String scope = layer.isGlobal() ? "§b[Global]§r " : "§e[World]§r ";
+            String match = item.getMatch() == MatchMode.EXACT ? "" : " §8[" + item.getMatch().name().toLowerCase(java.util.Locale.ROOT) + "]";
+            this.label = Text.of(scope + item.getName() + " §7(" + item.getRegistryId() + ")" + match);
+        }
+    }
+
+    public RuleBrowserScreen(Screen parent) {
+        super(Text.of("Forbidden Rules"));
+        this.parent = parent;
+    }
+
+    @Override
+    protected void init() {
+        if (index == null) {
+            buildRows();
+        }
+
+        int top = 32;
+        int bottom = height - 32;
+        searchField = new TextFieldWidget(textRenderer, width / 2 - 150, top - 22, 300, 18, Text.of("Search"));
+        searchField.setPlaceholder(Text.of("Search by name or registry ID"));
+        searchField.setText(query);
+        searchField.setChangedListener(this::applyFilter);
+        addDrawableChild(searchField);
+
+        list = new RuleList(client, width, bottom - top, top, ROW_HEIGHT);
+        addDrawableChild(list);
+
+        removeButton = ButtonWidget.builder(Text.of("Remove"), button -> removeSelected())
+                .dimensions(width / 2 - 154, height - 26, 150, 20)
+                .build();
+        addDrawableChild(removeButton);
+        addDrawableChild(ButtonWidget.builder(Text.of("Done"), button -> close())
+                .dimensions(width / 2 + 4, height - 26, 150, 20)
+                .build());
+
+        applyFilter(query);
+        setInitialFocus(searchField);
+    }
+
+    /**
+     * Collects the rules of the global layer and, when in a world, the world layer,
+     * and builds the search index over them.
+     */
+    private void buildRows() {
+        long start = System.nanoTime();
+        try {
+            addLayer(WorldConfig.getGlobal());
+            if (client != null && client.world != null) {
+                addLayer(WorldConfig.getCurrentWorld());
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error collecting rules for the rule browser", e);
+        }
+        List<List<String>> fields = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            fields.add(List.of(String.valueOf(row.item.getName()), String.valueOf(row.item.getRegistryId())));
+        }
+        index = RuleSearchIndex.build(fields);
+        LOGGER.info("Rule browser indexed {} rules in {} ms", rows.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void addLayer(WorldConfig layer) {
+        for (WorldConfig.ItemIdentifier item : layer.getForbiddenItems()) {
+            rows.add(new Row(layer, item));
+        }
+    }
+
+    private void applyFilter(String text) {
+        query = text;
+        int[] matches = index.search(text);
+        List<RuleList.RuleEntry> entries = new ArrayList<>(matches.length);
+        for (int match : matches) {
+            Row row = rows.get(match);
+            if (!row.removed) {
+                entries.add(list.entryFor(row));
+            }
+        }
+        list.setRows(entries);
+        updateButtons();
+    }
+
+    private void removeSelected() {
+        RuleList.RuleEntry selected = list.getSelectedOrNull();
+        if (selected == null) {
+            return;
+        }
+        Row row = selected.row;
+        row.layer.removeItem(row.item);
+        row.removed = true;
+        applyFilter(query);
+    }
+
+    private void updateButtons() {
+        if (removeButton != null) {
+            removeButton.active = list.getSelectedOrNull() != null;
+        }
+    }
+
+    @Override
+    public void render(DrawContext context, int mouseX, int mouseY, float deltaTicks) {
+        super.render(context, mouseX, mouseY, deltaTicks);
+        context.drawCenteredTextWithShadow(textRenderer, title, width / 2, 2, 0xFFFFFFFF);
+        context.drawTextWithShadow(textRenderer, Text.of(list.children().size() + " / " + rows.size()),
+                width / 2 + 156, 15, 0xFFA0A0A0);
+    }
+
+    @Override
+    public void close() {
+        if (client != null) {
+            client.setScreen(parent);
+        }
+    }
+
+    /**
+     * Scrolling list of rule rows. Entries are created once per rule and reused across searches.
+     */
+    private class RuleList extends AlwaysSelectedEntryListWidget<RuleList.RuleEntry> {
+        private final IdentityHashMap<Row, RuleEntry> entries = new IdentityHashMap<>();
+
+        private RuleList(MinecraftClient client, int width, int height, int y, int itemHeight) {
+            super(client, width, height, y, itemHeight);
+        }
+
+        private RuleEntry entryFor(Row row) {
+            return entries.computeIfAbsent(row, RuleEntry::new);
+        }
+
+        private void setRows(List<RuleEntry> rows) {
+            replaceEntries(rows);
+            setScrollY(0);
+        }
+
+        @Override
+        public void setSelected(RuleEntry entry) {
+            super.setSelected(entry);
+            updateButtons();
+        }
+
+        @Override
+        public int getRowWidth() {
+            return Math.min(width - 20, 400);
+        }
+
+        private class RuleEntry extends AlwaysSelectedEntryListWidget.Entry<RuleEntry> {
+            private final Row row;
+
+            private RuleEntry(Row row) {
+                this.row = row;
+            }
+
+            @Override
+            public void render(DrawContext context, int index, int y, int x, int entryWidth, int entryHeight,
+                    int mouseX, int mouseY, boolean hovered, float tickProgress) {
+                context.drawTextWithShadow(textRenderer, row.label, x + 2, y + 1, 0xFFFFFFFF);
+            }
+
+            @Override
+            public boolean mouseClicked(double mouseX, double mouseY, int button) {
+                RuleList.this.setSelected(this);
+                return true;
+            }
+
+            @Override
+            public Text getNarration() {
+                return row.label;
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package me.lucievol.forbiddenblocks.config;
+
+import net.minecraft.item.Item;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.Identifier;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable lookup structure for a set of rules, with one hash index per {@link MatchMode}.
+ *
+ * A check probes the indexes from cheapest to most expensive:
+ * - Registry rules, keyed by item: needs nothing but the held item
+ * - Name rules, keyed by item and display name: needs the display name
+ * - Exact rules, keyed by full identity: needs the component identity
+ *
+ * Each step only runs when some rule of that kind exists for the held item, so in a
+ * world with only registry or name rules no component identity is ever built.
+ */
+public final class RuleMatcher {
+    public static final RuleMatcher EMPTY = new RuleMatcher(Map.of(), Map.of(), Map.of(), Set.of(), Set.of());
+
+    private final Map<Item, WorldConfig.ItemIdentifier> registryRules;
+    private final Map<Item, Map<String, WorldConfig.ItemIdentifier>> nameRules;
+    private final Map<WorldConfig.ItemIdentifier, WorldConfig.ItemIdentifier> exactRules;
+    // Items with at least one exact rule, so other items never build an identity
+    private final Set<Item> exactItems;
+    // Items mentioned by any rule
+    private final Set<Item> items;
+
+    private RuleMatcher(Map<Item, WorldConfig.ItemIdentifier> registryRules,
+            Map<Item, Map<String, WorldConfig.ItemIdentifier>> nameRules,
+            Map<WorldConfig.ItemIdentifier, WorldConfig.ItemIdentifier> exactRules, Set<Item> exactItems, Set<Item> items) {
+        this.registryRules = registryRules;
+        this.nameRules = nameRules;
+        this.exactRules = exactRules;
+        this.exactItems = exactItems;
+        this.items = items;
+    }
+
+    /**
+     * Indexes the given rules. Rules naming items missing from the registry are skipped.
+     *
+     * @param rules The rules to index
+     * @return The matcher, never null
+     */
+    public static RuleMatcher build(Collection<WorldConfig.ItemIdentifier> rules) {
+        if (rules.isEmpty()) {
+            return EMPTY;
+        }
+        Map<Item, WorldConfig.ItemIdentifier> registryRules = new HashMap<>();
+        Map<Item, Map<String, WorldConfig.ItemIdentifier>> nameRules = new HashMap<>();
+        Map<WorldConfig.ItemIdentifier, WorldConfig.ItemIdentifier> exactRules = new HashMap<>();
+        Set<Item> exactItems = new HashSet<>();
+        Set<Item> items = new HashSet<>();
+        for (WorldConfig.ItemIdentifier rule : rules) {
+            Item item = resolveItem(rule);
+            if (item == null) {
+                continue;
+            }
+            items.add(item);
+            switch (rule.getMatch()) {
+                case REGISTRY -> registryRules.put(item, rule);
+                case NAME -> {
+                    if (rule.getName() != null) {
+                        nameRules.computeIfAbsent(item, key -> new HashMap<>()).put(rule.getName(), rule);
+                    }
+                }
+                case EXACT -> {
+                    exactRules.put(rule, rule);
+                    exactItems.add(item);
+                }
+            }
+        }
+        Map<Item, Map<String, WorldConfig.ItemIdentifier>> frozenNames = new HashMap<>();
+        nameRules.forEach((item, names) -> frozenNames.put(item, Map.copyOf(names)));
+        return new RuleMatcher(Map.copyOf(registryRules), Map.copyOf(frozenNames), Map.copyOf(exactRules),
+                Set.copyOf(exactItems), Set.copyOf(items));
+    }
+
+    private static Item resolveItem(WorldConfig.ItemIdentifier rule) {
+        Identifier id = rule.getRegistryId() != null ? Identifier.tryParse(rule.getRegistryId()) : null;
+        if (id == null || !Registries.ITEM.containsId(id)) {
+            return null;
+        }
+        return Registries.ITEM.get(id);
+    }
+
+    /**
+     * Checks whether the matcher holds no usable rules.
+     *
+     * @return true if nothing can match
+     */
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    /**
+     * Checks whether any rule mentions the item. Needs no identity and allocates nothing.
+     *
+     * @param item The held item
+     * @return false if no rule can match this item
+     */
+    public boolean mayMatch(Item item) {
+        return items.contains(item);
+    }
+
+    /**
+     * Finds a rule matching the probed stack, computing only as much of its identity as needed.
+     *
+     * @param probe The stack being checked
+     * @return The first matching rule, or null if none matches
+     */
+    public WorldConfig.ItemIdentifier match(ItemProbe probe) {
+        Item item = probe.getItem();
+        if (!items.contains(item)) {
+            return null;
+        }
+        WorldConfig.ItemIdentifier rule = registryRules.get(item);
+        if (rule != null) {
+            return rule;
+        }
+        Map<String, WorldConfig.ItemIdentifier> names = nameRules.get(item);
+        if (names != null) {
+            rule = names.get(probe.getName());
+            if (rule != null) {
+                return rule;
+            }
+        }
+        if (exactItems.contains(item)) {
+            WorldConfig.ItemIdentifier identity = probe.getIdentity();
+            if (identity != null) {
+                return exactRules.get(identity);
+            }
+        }
+        return null;
+    }
+}
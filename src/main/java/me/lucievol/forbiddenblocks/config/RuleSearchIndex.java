@@ -0,0 +1,145 @@
+package me.lucievol.forbiddenblocks.config;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * N-gram index over the rule browser's rows, built once when the browser opens.
+ *
+ * Every 1-, 2- and 3-character substring of a row's lowercased text maps to a sorted
+ * list of row numbers. Queries of up to three characters read one posting list
+ * directly; longer queries intersect the posting lists of their trigrams and then
+ * confirm the few remaining candidates with a substring check.
+ */
+public final class RuleSearchIndex {
+    private static final int[] NO_ROWS = new int[0];
+    // Separates fields in a row's text so no n-gram spans two fields
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    private final String[] texts;
+    private final Long2ObjectOpenHashMap<int[]> postings;
+
+    private RuleSearchIndex(String[] texts, Long2ObjectOpenHashMap<int[]> postings) {
+        this.texts = texts;
+        this.postings = postings;
+    }
+
+    /**
+     * Builds an index where each row is searchable by any of its fields.
+     *
+     * @param rows One list of searchable fields per row, such as the name and registry ID
+     * @return The index
+     */
+    public static RuleSearchIndex build(List<List<String>> rows) {
+        String[] texts = new String[rows.size()];
+        Long2ObjectOpenHashMap<IntArrayList> lists = new Long2ObjectOpenHashMap<>();
+        LongOpenHashSet rowGrams = new LongOpenHashSet();
+        for (int row = 0; row < texts.length; row++) {
+            String text = String.join(String.valueOf(FIELD_SEPARATOR), rows.get(row)).toLowerCase(Locale.ROOT);
+            texts[row] = text;
+            rowGrams.clear();
+            for (int start = 0; start < text.length(); start++) {
+                for (int length = 1; length <= 3 && start + length <= text.length(); length++) {
+                    long gram = pack(text, start, length);
+                    if (gram != -1 && rowGrams.add(gram)) {
+                        lists.computeIfAbsent(gram, key -> new IntArrayList()).add(row);
+                    }
+                }
+            }
+        }
+        Long2ObjectOpenHashMap<int[]> postings = new Long2ObjectOpenHashMap<>(lists.size());
+        lists.long2ObjectEntrySet().fastForEach(entry -> postings.put(entry.getLongKey(), entry.getValue().toIntArray()));
+        return new RuleSearchIndex(texts, postings);
+    }
+
+    /**
+     * Gets the number of indexed rows.
+     *
+     * @return The row count
+     */
+    public int size() {
+        return texts.length;
+    }
+
+    /**
+     * Finds the rows whose text contains the query, ignoring case.
+     *
+     * @param query The search text; blank matches every row
+     * @return Matching row numbers in ascending order
+     */
+    public int[] search(String query) {
+        String needle = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        if (needle.isEmpty()) {
+            int[] all = new int[texts.length];
+            for (int row = 0; row < all.length; row++) {
+                all[row] = row;
+            }
+            return all;
+        }
+        if (needle.length() <= 3) {
+            int[] rows = postings.get(pack(needle, 0, needle.length()));
+            return rows != null ? rows.clone() : NO_ROWS;
+        }
+
+        // Start from the rarest trigram, then narrow by the rest
+        int[] candidates = null;
+        for (int start = 0; start + 3 <= needle.length(); start++) {
+            int[] rows = postings.get(pack(needle, start, 3));
+            if (rows == null) {
+                return NO_ROWS;
+            }
+            if (candidates == null || rows.length < candidates.length) {
+                candidates = candidates == null ? rows : intersect(rows, candidates);
+            } else {
+                candidates = intersect(candidates, rows);
+            }
+            if (candidates.length == 0) {
+                return NO_ROWS;
+            }
+        }
+        IntArrayList matches = new IntArrayList(candidates.length);
+        for (int row : candidates) {
+            if (texts[row].contains(needle)) {
+                matches.add(row);
+            }
+        }
+        return matches.toIntArray();
+    }
+
+    private static int[] intersect(int[] smaller, int[] larger) {
+        IntArrayList result = new IntArrayList(smaller.length);
+        int j = 0;
+        for (int value : smaller) {
+            while (j < larger.length && larger[j] < value) {
+                j++;
+            }
+            if (j == larger.length) {
+                break;
+            }
+            if (larger[j] == value) {
+                result.add(value);
+            }
+        }
+        return result.toIntArray();
+    }
+
+    /**
+     * Packs up to three chars and the length into a long key, or -1 if the
+     * substring contains the field separator.
+     */
+    private static long pack(String text, int start, int length) {
+        long key = length;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(start + i);
+            if (c == FIELD_SEPARATOR) {
+                return -1;
+            }
+            key = (key << 16) | c;
+        }
+        return key;
+    }
+}
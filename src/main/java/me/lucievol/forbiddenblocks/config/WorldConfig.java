@@ -2,24 +2,43 @@ package me.lucievol.forbiddenblocks.config;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.client.network.ServerInfo;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * World-specific configuration manager for the ForbiddenBlocks mod.
@@ -29,8 +48,20 @@ import java.util.concurrent.ConcurrentHashMap;
  * - Single player worlds: config/forbiddenblocks/worlds/singleplayer_[worldname].json
  * - Multiplayer servers: config/forbiddenblocks/worlds/multiplayer_[serveraddress].json
  * 
+ * Rules are layered: a global layer (config/forbiddenblocks/global.json) applies to every
+ * world, and each world layer can forbid additional items or allow global items back.
+ * The effective rule set is precomputed into an immutable snapshot that is republished
+ * whenever either layer changes, so lookups never take a lock.
+ * 
  * Key Features:
  * - Thread-safe configuration handling using synchronization and concurrent data structures
+ * - Global rule layer merged with per-world forbid/allow layers
+ * - Lock-free reads through a copy-on-write merged snapshot
+ * - Hot reload of externally edited files, applying only added and removed entries
+ * - File locking so several client instances can share one config directory, waiting
+ *   for another instance's lock only briefly and never on the render thread
+ * - Placement zones per dimension, looked up through a chunk-keyed {@link ZoneIndex}
+ * - Per-rule match modes (registry, name, exact) with one index each, see {@link RuleMatcher}
  * - Automatic per-world/server configuration file management
  * - Real-time saving of changes to prevent data loss
  * - Comprehensive error handling and logging
@@ -41,26 +72,252 @@ import java.util.concurrent.ConcurrentHashMap;
 public class WorldConfig {
     private static final Logger LOGGER = LoggerFactory.getLogger("forbiddenblocks");
     private static final String CONFIG_DIR = "config/forbiddenblocks/worlds";
+    private static final String GLOBAL_CONFIG_FILE = "config/forbiddenblocks/global.json";
+    private static final String GLOBAL_ID = "global";
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private static final ConcurrentHashMap<String, WorldConfig> WORLD_CONFIGS = new ConcurrentHashMap<>();
     private static final Object CONFIG_LOCK = new Object();
+    // Guards creation of the global layer; separate from CONFIG_LOCK because loading it reads the file
+    private static final Object GLOBAL_LOCK = new Object();
+    // How long a file lock held by another instance is waited for before giving up for now
+    private static final long LOCK_TIMEOUT_MILLIS = 2000;
+    // Delay before a save or load that found the file locked is tried again on the writer thread
+    private static final long LOCK_RETRY_MILLIS = 2000;
+    // Written to every file. Version 2 files hold exact rules built from the identity mask;
+    // files without a version were written by earlier versions and may hold legacy exact rules
+    private static final int FORMAT_VERSION = 2;
     private static final TypeToken<HashSet<ItemIdentifier>> ITEM_IDENTIFIER_SET_TYPE = new TypeToken<HashSet<ItemIdentifier>>(){};
     
     // Track the current connection for multiplayer identification
     private static String currentConnectionId = null;
     private static final Object CONNECTION_LOCK = new Object();
+    // Config pinned for the active connection, so per-interaction lookups skip the lock and ID building
+    private static volatile WorldConfig currentWorld = null;
+
+    // The global layer is created on first use, see getGlobal()
+    private static volatile WorldConfig globalLayer = null;
+    // Bumped every time any snapshot is republished, so callers can tell when cached decisions went stale
+    private static volatile long rulesVersion = 0;
+
+    /**
+     * On-disk layout of a rule layer.
+     * Legacy files contain a bare array of forbidden items and are still accepted on load.
+     */
+    private static class LayerData {
+        // FORMAT_VERSION of the mod that wrote the file, 0 if it predates versioning
+        private int version;
+        private HashSet<ItemIdentifier> forbidden;
+        private HashSet<ItemIdentifier> allowed;
+        // Optional override of the global identity mask for this layer
+        private List<String> identityComponents;
+        // Areas of this world with their own placement rules (ignored on the global layer)
+        private List<ForbidZone> zones;
+        // Number of legacy exact rules converted while parsing; not written back
+        private transient int migrated;
+    }
+
+    /**
+     * Rule additions and removals made in game but not yet written to disk.
+     * Unlike the toggle that produced them, they can be applied again on top of
+     * newer file contents without flipping anything back.
+     */
+    private static final class Change {
+        private final Set<ItemIdentifier> addForbidden = new HashSet<>();
+        private final Set<ItemIdentifier> removeForbidden = new HashSet<>();
+        private final Set<ItemIdentifier> addAllowed = new HashSet<>();
+        private final Set<ItemIdentifier> removeAllowed = new HashSet<>();
+
+        private void applyTo(WorldConfig layer) {
+            layer.forbiddenItems.removeAll(removeForbidden);
+            layer.allowedItems.removeAll(removeAllowed);
+            for (ItemIdentifier rule : addForbidden) {
+                layer.forbiddenItems.add(rule.intern());
+            }
+            for (ItemIdentifier rule : addAllowed) {
+                layer.allowedItems.add(rule.intern());
+            }
+        }
+    }
 
     public static class ItemIdentifier {
+        // Canonical instances shared by every layer; entries vanish once no layer references them
+        private static final Map<ItemIdentifier, WeakReference<ItemIdentifier>> POOL = new WeakHashMap<>();
+        // Components every item carries by default. Identities written before the component mask
+        // reflected every component through Gson, so they always contain these
+        private static final List<String> LEGACY_MARKERS = List.of("minecraft:max_stack_size", "minecraft:rarity");
+
         private final String registryId;
         private final String name;
         // Store all components as a sorted JSON string for consistent hashing and equality.
         // This replaces the 'lore' field, as lore is just one of many components.
         private final String componentsJson;
+        // How much of the identity this rule compares; null (as in files written before match modes) means exact
+        private final MatchMode match;
+        // Cached hash; computed lazily because Gson bypasses the constructor. 0 means not yet computed.
+        private transient int hash;
 
         public ItemIdentifier(String registryId, String name, String componentsJson) {
+            this(registryId, name, componentsJson, null);
+        }
+
+        public ItemIdentifier(String registryId, String name, String componentsJson, MatchMode match) {
             this.registryId = registryId;
             this.name = name;
             this.componentsJson = componentsJson;
+            this.match = match == MatchMode.EXACT ? null : match;
+        }
+
+        /**
+         * Creates a rule for the probed stack that compares as much identity as the mode needs.
+         * Registry and name rules keep the display name only so they read well in files and the browser.
+         * 
+         * @param probe The stack to create a rule for
+         * @param mode The match mode of the new rule
+         * @return The rule, or null if the stack cannot be identified
+         */
+        public static ItemIdentifier forStack(ItemProbe probe, MatchMode mode) {
+            if (mode == MatchMode.EXACT) {
+                return probe.getIdentity();
+            }
+            Identifier id = Registries.ITEM.getId(probe.getItem());
+            return new ItemIdentifier(id.toString(), probe.getName(), null, mode);
+        }
+
+        /**
+         * Checks whether this rule matches the probed stack, computing only the identity it needs.
+         * For one-off checks; hot paths use a {@link RuleMatcher} instead.
+         * 
+         * @param probe The stack being checked
+         * @return true if the rule applies to the stack
+         */
+        public boolean matches(ItemProbe probe) {
+            if (!Registries.ITEM.getId(probe.getItem()).toString().equals(registryId)) {
+                return false;
+            }
+            return switch (getMatch()) {
+                case REGISTRY -> true;
+                case NAME -> probe.getName().equals(name);
+                case EXACT -> equals(probe.getIdentity());
+            };
+        }
+
+        /**
+         * Returns the canonical instance equal to this identifier, so identical rules
+         * loaded from many world files share one object and equality checks between
+         * them succeed on the reference comparison.
+         * 
+         * Only exact rules are pooled. Registry and name rules compare fewer fields than
+         * they store, so pooling them would hand one world the name another world's file
+         * recorded, and write it into this world's file on the next save.
+         * 
+         * @return The pooled instance, which is this one if it was not pooled yet or is not an exact rule
+         */
+        public ItemIdentifier intern() {
+            if (match != null) {
+                return this;
+            }
+            synchronized (POOL) {
+                WeakReference<ItemIdentifier> ref = POOL.get(this);
+                ItemIdentifier canonical = ref != null ? ref.get() : null;
+                if (canonical == null) {
+                    POOL.put(this, new WeakReference<>(this));
+                    canonical = this;
+                }
+                return canonical;
+            }
+        }
+
+        /**
+         * Checks whether this is an exact rule written before identities were built from the
+         * component mask. Such a rule stored every component of the item, reflected through
+         * Gson, so no identity built today can equal it and it would never match again.
+         * 
+         * Only meaningful for rules from files without a format version: a mask configured
+         * to include the marker components produces identities that look the same, so rules
+         * from versioned files are never treated as legacy.
+         * 
+         * @return true if the rule needs to be migrated
+         */
+        public boolean isLegacyIdentity() {
+            if (match != null || componentsJson == null) {
+                return false;
+            }
+            try {
+                JsonElement root = JsonParser.parseString(componentsJson);
+                if (!root.isJsonObject()) {
+                    return false;
+                }
+                JsonObject components = root.getAsJsonObject();
+                for (String marker : LEGACY_MARKERS) {
+                    if (!components.has(marker)) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (JsonParseException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Checks whether this exact rule stores a component the given mask does not include.
+         * Identities are built from the mask alone, so such a rule cannot match any item
+         * until the mask includes that component again.
+         * 
+         * @param mask The identity mask of the layer holding the rule
+         * @return true if the rule cannot match under this mask
+         */
+        public boolean storesComponentsOutside(ComponentMask mask) {
+            if (match != null || componentsJson == null) {
+                return false;
+            }
+            try {
+                JsonElement root = JsonParser.parseString(componentsJson);
+                if (!root.isJsonObject()) {
+                    return false;
+                }
+                for (String componentId : root.getAsJsonObject().keySet()) {
+                    if (!mask.contains(componentId)) {
+                        return true;
+                    }
+                }
+                return false;
+            } catch (JsonParseException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Returns this rule as the constructor would have built it. Gson bypasses the
+         * constructor, so a file spelling out "match": "exact" yields a rule whose mode is
+         * not null like every exact rule created in game, and which would skip pooling
+         * and legacy detection.
+         * 
+         * @return A rule with the exact mode stored as null, or this rule if it already is
+         */
+        public ItemIdentifier normalized() {
+            return match == MatchMode.EXACT ? new ItemIdentifier(registryId, name, componentsJson, null) : this;
+        }
+
+        /**
+         * Converts a legacy exact rule into a name rule for the same item and display name,
+         * the closest rule that still matches the stack the player protected.
+         * 
+         * @return The name rule, or a registry rule if no name was stored
+         */
+        public ItemIdentifier migrateLegacy() {
+            return new ItemIdentifier(registryId, name, null, name != null ? MatchMode.NAME : MatchMode.REGISTRY);
+        }
+
+        /**
+         * Gets the number of distinct identifiers currently pooled.
+         * 
+         * @return The pool size
+         */
+        public static int poolSize() {
+            synchronized (POOL) {
+                return POOL.size();
+            }
         }
 
         public String getRegistryId() {
@@ -75,19 +332,40 @@ public class WorldConfig {
             return componentsJson;
         }
 
+        public MatchMode getMatch() {
+            return match != null ? match : MatchMode.EXACT;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
             ItemIdentifier that = (ItemIdentifier) o;
-            return Objects.equals(registryId, that.registryId) &&
-                    Objects.equals(name, that.name) &&
-                    Objects.equals(componentsJson, that.componentsJson);
+            // Differing hashes rule out a match without comparing the component JSON
+            if (hashCode() != that.hashCode() || getMatch() != that.getMatch()
+                    || !Objects.equals(registryId, that.registryId)) {
+                return false;
+            }
+            // Only the fields the mode compares take part, so a registry rule equals itself under any name
+            return switch (getMatch()) {
+                case REGISTRY -> true;
+                case NAME -> Objects.equals(name, that.name);
+                case EXACT -> Objects.equals(name, that.name) && Objects.equals(componentsJson, that.componentsJson);
+            };
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(registryId, name, componentsJson);
+            int h = hash;
+            if (h == 0) {
+                h = switch (getMatch()) {
+                    case REGISTRY -> Objects.hash(MatchMode.REGISTRY, registryId);
+                    case NAME -> Objects.hash(MatchMode.NAME, registryId, name);
+                    case EXACT -> Objects.hash(registryId, name, componentsJson);
+                };
+                hash = h;
+            }
+            return h;
         }
 
         @Override
@@ -98,34 +376,145 @@ public class WorldConfig {
                     "registryId='" + registryId + '\'' +
                     ", name='" + name + '\'' +
                     ", componentsJson='" + componentsJson + '\'' +
+                    ", match=" + getMatch() +
                     '}';
         }
     }
 
     private final String worldId;
+    private final boolean isGlobal;
+    // Created by createDetached: publishes only its own rules and never touches the world layers
+    private final boolean detached;
     private final Set<ItemIdentifier> forbiddenItems;
+    // Items forbidden by the global layer that this world allows again (unused on the global layer)
+    private final Set<ItemIdentifier> allowedItems;
     private final File configFile;
     private volatile boolean isDirty;
+    // Changes applied in memory but not yet written, oldest first. Guarded by CONFIG_LOCK.
+    private final List<Change> pendingChanges = new ArrayList<>();
+    // Immutable merged view of the global and world layers, replaced wholesale on every change
+    private volatile Set<ItemIdentifier> effectiveForbidden = Set.of();
+    // Per-match-mode indexes over effectiveForbidden, published together with it
+    private volatile RuleMatcher matcher = RuleMatcher.EMPTY;
+    // Per-world identity mask override, null to use the global mask
+    private volatile List<String> identityComponents;
+    private volatile ComponentMask identityMask;
+    private volatile List<ForbidZone> zones;
+    private volatile ZoneIndex zoneIndex = ZoneIndex.EMPTY;
 
     private WorldConfig(String worldId) {
+        this(worldId, getConfigFile(worldId), false, false);
+    }
+
+    private WorldConfig(String worldId, File configFile, boolean isGlobal, boolean detached) {
         this.worldId = worldId;
+        this.isGlobal = isGlobal;
+        this.detached = detached;
         this.forbiddenItems = ConcurrentHashMap.<ItemIdentifier>newKeySet();
-        this.configFile = getConfigFile(worldId);
+        this.allowedItems = ConcurrentHashMap.<ItemIdentifier>newKeySet();
+        this.configFile = configFile;
         this.isDirty = false;
         load();
     }
 
+    /**
+     * Creates a layer backed by the given file that is neither a world nor the global
+     * layer: it is not registered, not watched and merges no other layer in.
+     * Used by tests and benchmarks that need rules without a running client.
+     * 
+     * @param id Name used in log messages
+     * @param file The rule file, read now and written on changes
+     * @return The loaded layer
+     */
+    public static WorldConfig createDetached(String id, File file) {
+        return new WorldConfig(id, file, true, true);
+    }
+
     /**
      * Saves all world configurations to disk.
      * This should be called when the client is shutting down.
      */
     public static void saveAll() {
         LOGGER.info("Saving all world configurations");
+        WorldConfig global = globalLayer;
+        if (global != null) {
+            global.save();
+        }
         for (WorldConfig config : WORLD_CONFIGS.values()) {
             config.save();
         }
     }
 
+    /**
+     * Gets the global rule layer, loading it on first access.
+     * Items forbidden here are forbidden in every world unless a world allows them back.
+     * 
+     * @return The global WorldConfig layer
+     */
+    public static WorldConfig getGlobal() {
+        WorldConfig global = globalLayer;
+        if (global == null) {
+            synchronized (GLOBAL_LOCK) {
+                global = globalLayer;
+                if (global == null) {
+                    File minecraftDir = MinecraftClient.getInstance().runDirectory;
+                    global = new WorldConfig(GLOBAL_ID, new File(minecraftDir, GLOBAL_CONFIG_FILE), true, false);
+                    globalLayer = global;
+                    ConfigWatcher.start(global.configFile.getParentFile().toPath(),
+                            new File(minecraftDir, CONFIG_DIR).toPath());
+                }
+            }
+        }
+        return global;
+    }
+
+    /**
+     * Gets a counter that changes whenever the effective rules of any layer change.
+     * 
+     * @return The current rules version
+     */
+    public static long getRulesVersion() {
+        return rulesVersion;
+    }
+
+    /**
+     * Reloads whichever loaded layer is backed by the given file.
+     * Files of worlds that have not been loaded yet are ignored; they are read on join.
+     * 
+     * @param file The file that changed on disk
+     */
+    static void onFileChanged(Path file) {
+        Path changed = file.toAbsolutePath().normalize();
+        WorldConfig global = globalLayer;
+        if (global != null && global.isBackedBy(changed)) {
+            global.reloadFromDisk();
+            return;
+        }
+        for (WorldConfig config : WORLD_CONFIGS.values()) {
+            if (config.isBackedBy(changed)) {
+                config.reloadFromDisk();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reloads every loaded layer, used when file change events were lost.
+     */
+    static void reloadAll() {
+        WorldConfig global = globalLayer;
+        if (global != null) {
+            global.reloadFromDisk();
+        }
+        for (WorldConfig config : WORLD_CONFIGS.values()) {
+            config.reloadFromDisk();
+        }
+    }
+
+    private boolean isBackedBy(Path file) {
+        return configFile.toPath().toAbsolutePath().normalize().equals(file);
+    }
+
     /**
      * Updates the current connection identifier when connecting to a server.
      * This should be called when the client connects to a server or loads a world.
@@ -134,6 +523,7 @@ public class WorldConfig {
      */
     public static void updateConnection(ClientPlayNetworkHandler networkHandler) {
         synchronized (CONNECTION_LOCK) {
+            currentWorld = null;
             if (networkHandler == null) {
                 LOGGER.info("Network connection closed, clearing connection ID");
                 currentConnectionId = null;
@@ -187,6 +577,14 @@ public class WorldConfig {
      * @return WorldConfig instance for the current world/server
      */
     public static WorldConfig getCurrentWorld() {
+        WorldConfig pinned = currentWorld;
+        if (pinned != null) {
+            return pinned;
+        }
+        return resolveCurrentWorld();
+    }
+
+    private static WorldConfig resolveCurrentWorld() {
         String worldId;
         synchronized (CONNECTION_LOCK) {
             if (currentConnectionId != null) {
@@ -220,7 +618,9 @@ public class WorldConfig {
      */
     public static void updateForCurrentWorld() {
         String previousId = currentConnectionId;
-        WorldConfig config = getCurrentWorld();
+        currentWorld = null;
+        WorldConfig config = resolveCurrentWorld();
+        currentWorld = config;
         LOGGER.info("WORLDCONFIG: Updated config - Previous ID: {}, Current ID: {}", previousId, config.worldId);
         LOGGER.info("WORLDCONFIG: Loading configuration for world: {}", config.worldId);
         config.load();
@@ -256,39 +656,390 @@ public class WorldConfig {
     }
 
     private void load() {
+        LOGGER.info("WORLDCONFIG: Attempting to load config from: {}", configFile.getAbsolutePath());
+        if (!isGlobal) {
+            // World snapshots merge in the global layer, so make sure it is loaded first
+            getGlobal();
+        }
+
+        if (!configFile.exists()) {
+            LOGGER.info("WORLDCONFIG: No existing config for world {}, creating new file at {}", worldId, configFile.getAbsolutePath());
+            // The file is written on the first change; a pending one is already queued on the writer thread
+            synchronized (CONFIG_LOCK) {
+                publishSnapshot();
+            }
+            return;
+        }
+
+        // Loads run on the render thread (join, world switch), so the file lock is tried once and never waited for;
+        // if another instance holds it, the rules already loaded stay published and the writer thread reads the file
+        LayerData data = null;
+        try {
+            String json = readShared(0);
+            if (json == null) {
+                LOGGER.warn("WORLDCONFIG: {} is locked by another instance, loading it in the background",
+                        configFile.getAbsolutePath());
+                ConfigWriter.schedule(this::reloadFromDisk, 0);
+            } else {
+                data = parseLayer(json);
+                if (data == null || data.forbidden == null) {
+                    LOGGER.warn("WORLDCONFIG: Loaded null items set from file: {}", configFile.getAbsolutePath());
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("WORLDCONFIG: Error loading config for world: " + worldId, e);
+        }
+
         synchronized (CONFIG_LOCK) {
-            LOGGER.info("WORLDCONFIG: Attempting to load config from: {}", configFile.getAbsolutePath());
-            
-            if (!configFile.exists()) {
-                LOGGER.info("WORLDCONFIG: No existing config for world {}, creating new file at {}", worldId, configFile.getAbsolutePath());
-                save();
+            if (data != null && data.forbidden != null) {
+                mergeDiskState(data);
+                onLegacyRulesMigrated(data.migrated);
+                warnAboutUnmatchableRules();
+                LOGGER.info("WORLDCONFIG: Loaded {} forbidden and {} allowed items for world {} ({} distinct identifiers pooled across all worlds)",
+                        forbiddenItems.size(), allowedItems.size(), worldId, ItemIdentifier.poolSize());
+                if (!forbiddenItems.isEmpty()) {
+                    LOGGER.info("WORLDCONFIG: Sample of forbidden items: {}",
+                             forbiddenItems.stream().limit(3).map(Object::toString).collect(java.util.stream.Collectors.joining(", ")));
+                }
+            }
+            publishSnapshot();
+        }
+    }
+
+    /**
+     * Re-reads this layer's file after an external change and applies only the
+     * entries that were added or removed. Called by the {@link ConfigWatcher} thread.
+     * Also runs on the writer thread for loads that found the file locked.
+     * Unparseable content (for example a half-written file) leaves the current rules in place,
+     * and a file locked by another instance for too long is read again later.
+     */
+    void reloadFromDisk() {
+        if (!configFile.exists()) {
+            return;
+        }
+        try {
+            String json = readShared(LOCK_TIMEOUT_MILLIS);
+            if (json == null) {
+                LOGGER.debug("WORLDCONFIG: {} is locked by another instance, reloading it later", configFile.getAbsolutePath());
+                ConfigWriter.schedule(this::reloadFromDisk, LOCK_RETRY_MILLIS);
                 return;
             }
+            LayerData data = parseLayer(json);
+            if (data == null || data.forbidden == null) {
+                LOGGER.warn("WORLDCONFIG: Ignoring unreadable external change to {}", configFile.getAbsolutePath());
+                return;
+            }
+            synchronized (CONFIG_LOCK) {
+                if (mergeDiskState(data)) {
+                    publishSnapshot();
+                }
+                onLegacyRulesMigrated(data.migrated);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("WORLDCONFIG: Could not reload {} after external change: {}", configFile.getAbsolutePath(), e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the given file contents, then applies changes not yet written again on
+     * top, so a reload never drops a toggle that is still waiting to be saved.
+     * Must be called while holding CONFIG_LOCK.
+     * 
+     * @return true if anything may have changed
+     */
+    private boolean mergeDiskState(LayerData data) {
+        boolean changed = applyDiskState(data);
+        for (Change change : pendingChanges) {
+            change.applyTo(this);
+        }
+        return changed || !pendingChanges.isEmpty();
+    }
+
+    /**
+     * Brings the in-memory layer in line with the given file contents by removing
+     * entries no longer present and adding new ones, rather than rebuilding the sets.
+     * Must be called while holding CONFIG_LOCK.
+     * 
+     * @return true if anything changed
+     */
+    private boolean applyDiskState(LayerData data) {
+        boolean changed = applyDiff(forbiddenItems, data.forbidden, "forbidden");
+        if (!isGlobal) {
+            changed |= applyDiff(allowedItems, data.allowed != null ? data.allowed : Set.of(), "allowed");
+            if (!Objects.equals(identityComponents, data.identityComponents)) {
+                identityComponents = data.identityComponents;
+                identityMask = identityComponents != null ? ComponentMask.resolve(identityComponents) : null;
+                changed = true;
+            }
+            if (!Objects.equals(zones, data.zones)) {
+                zones = data.zones;
+                zoneIndex = ZoneIndex.build(zones);
+                changed = true;
+            }
+        }
+        return changed;
+    }
 
-            try (BufferedReader reader = new BufferedReader(new FileReader(configFile, StandardCharsets.UTF_8))) {
-                StringBuilder content = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    content.append(line);
+    private boolean applyDiff(Set<ItemIdentifier> target, Set<ItemIdentifier> incoming, String label) {
+        int removed = 0;
+        for (ItemIdentifier item : target) {
+            if (!incoming.contains(item)) {
+                target.remove(item);
+                removed++;
+            }
+        }
+        // An equal registry or name rule may still store a different name, which the browser shows
+        Map<ItemIdentifier, String> storedNames = new HashMap<>();
+        for (ItemIdentifier item : target) {
+            if (item.getMatch() != MatchMode.EXACT) {
+                storedNames.put(item, item.getName());
+            }
+        }
+        int added = 0;
+        int renamed = 0;
+        for (ItemIdentifier item : incoming) {
+            if (!target.contains(item)) {
+                if (target.add(item.intern())) {
+                    added++;
                 }
-                
-                Set<ItemIdentifier> items = GSON.fromJson(content.toString(), ITEM_IDENTIFIER_SET_TYPE.getType());
-                
-                if (items != null) {
-                    forbiddenItems.clear();
-                    forbiddenItems.addAll(items);
-                    LOGGER.info("WORLDCONFIG: Loaded {} forbidden items for world {}", items.size(), worldId);
-                    if (!items.isEmpty()) {
-                        LOGGER.info("WORLDCONFIG: Sample of forbidden items: {}", 
-                                 items.stream().limit(3).map(Object::toString).collect(java.util.stream.Collectors.joining(", ")));
+            } else if (item.getMatch() != MatchMode.EXACT && !Objects.equals(storedNames.get(item), item.getName())) {
+                // Keep the name from the file
+                target.remove(item);
+                target.add(item);
+                renamed++;
+            }
+        }
+        if (added > 0 || removed > 0 || renamed > 0) {
+            LOGGER.info("WORLDCONFIG: Applied file changes to {} items of {}: +{} -{}, {} renamed", label, worldId,
+                    added, removed, renamed);
+        }
+        return added > 0 || removed > 0 || renamed > 0;
+    }
+
+    /**
+     * Reads this layer's file while holding a shared lock, so a write in progress
+     * from another client instance is never observed half-done.
+     * 
+     * @param timeoutMillis How long to wait for the lock; 0 tries once without waiting
+     * @return The file contents, or null if another instance kept the file locked
+     */
+    private String readShared(long timeoutMillis) throws IOException {
+        try (FileChannel channel = FileChannel.open(configFile.toPath(), StandardOpenOption.READ)) {
+            FileLock lock = tryLock(channel, true, timeoutMillis);
+            if (lock == null) {
+                return null;
+            }
+            try (lock) {
+                return readChannel(channel);
+            }
+        }
+    }
+
+    /**
+     * Takes a lock on the whole file, retrying with growing pauses for at most the
+     * given time instead of blocking until the holder lets go.
+     * 
+     * @param channel The open file
+     * @param shared true for a read lock, false for an exclusive write lock
+     * @param timeoutMillis How long to keep retrying; 0 tries once
+     * @return The lock, or null if it stayed held for the whole timeout
+     */
+    private static FileLock tryLock(FileChannel channel, boolean shared, long timeoutMillis) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long pauseMillis = 5;
+        while (true) {
+            FileLock lock;
+            try {
+                lock = channel.tryLock(0, Long.MAX_VALUE, shared);
+            } catch (OverlappingFileLockException e) {
+                // Held through another channel in this process, e.g. the watcher reading while the writer saves
+                lock = null;
+            }
+            if (lock != null) {
+                return lock;
+            }
+            if (System.nanoTime() >= deadline) {
+                return null;
+            }
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            pauseMillis = Math.min(pauseMillis * 2, 200);
+        }
+    }
+
+    private static String readChannel(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        channel.position(0);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // keep reading until the buffer is full or the file ends
+        }
+        buffer.flip();
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+    private void writeChannel(FileChannel channel) throws IOException {
+        LayerData data = new LayerData();
+        data.version = FORMAT_VERSION;
+        data.forbidden = new HashSet<>(forbiddenItems);
+        data.allowed = isGlobal ? null : new HashSet<>(allowedItems);
+        data.identityComponents = identityComponents;
+        data.zones = zones;
+        ByteBuffer buffer = ByteBuffer.wrap(GSON.toJson(data).getBytes(StandardCharsets.UTF_8));
+        channel.truncate(0);
+        channel.position(0);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Parses a layer file, accepting both the layered object format and the legacy bare array.
+     */
+    private static LayerData parseLayer(String json) {
+        JsonElement root = JsonParser.parseString(json);
+        if (root == null || root.isJsonNull()) {
+            return null;
+        }
+        LayerData data;
+        if (root.isJsonArray()) {
+            data = new LayerData();
+            data.forbidden = GSON.fromJson(root, ITEM_IDENTIFIER_SET_TYPE.getType());
+        } else {
+            data = GSON.fromJson(root, LayerData.class);
+        }
+        if (data != null) {
+            normalizeRules(data.forbidden);
+            normalizeRules(data.allowed);
+        }
+        if (data != null && data.version < FORMAT_VERSION) {
+            data.migrated = migrateLegacyRules(data.forbidden) + migrateLegacyRules(data.allowed);
+        }
+        return data;
+    }
+
+    /**
+     * Rebuilds rules Gson read with an explicit exact mode, see {@link ItemIdentifier#normalized}.
+     */
+    private static void normalizeRules(Set<ItemIdentifier> rules) {
+        if (rules == null) {
+            return;
+        }
+        List<ItemIdentifier> explicit = new ArrayList<>();
+        for (ItemIdentifier rule : rules) {
+            if (rule.match == MatchMode.EXACT) {
+                explicit.add(rule);
+            }
+        }
+        for (ItemIdentifier rule : explicit) {
+            rules.remove(rule);
+            rules.add(rule.normalized());
+        }
+    }
+
+    /**
+     * Replaces legacy exact rules in the set with name rules, see {@link ItemIdentifier#isLegacyIdentity}.
+     * Only applied to files without a format version.
+     * 
+     * @return The number of rules replaced
+     */
+    private static int migrateLegacyRules(Set<ItemIdentifier> rules) {
+        if (rules == null) {
+            return 0;
+        }
+        List<ItemIdentifier> legacy = new ArrayList<>();
+        for (ItemIdentifier rule : rules) {
+            if (rule.isLegacyIdentity()) {
+                legacy.add(rule);
+            }
+        }
+        for (ItemIdentifier rule : legacy) {
+            rules.remove(rule);
+            rules.add(rule.migrateLegacy());
+        }
+        return legacy.size();
+    }
+
+    /**
+     * Reports legacy rules converted while reading this layer's file and queues the file
+     * to be rewritten, so the conversion is only announced once.
+     * Must be called while holding CONFIG_LOCK.
+     */
+    private void onLegacyRulesMigrated(int count) {
+        if (count == 0) {
+            return;
+        }
+        LOGGER.warn("WORLDCONFIG: {} rule(s) in {} were saved by an older version of the mod and would no longer match "
+                + "any item. They were converted to name rules (same item and display name) so those items stay protected; "
+                + "toggle an item again to get an exact rule back. The file will be rewritten in the current format.",
+                count, configFile.getAbsolutePath());
+        isDirty = true;
+        ConfigWriter.scheduleFlush(this, 0);
+    }
+
+    /**
+     * Warns about exact rules in this layer that store components outside its identity mask,
+     * usually because identityComponents changed after they were created. They stay in the
+     * file but cannot match any item until the mask includes those components again.
+     * Must be called while holding CONFIG_LOCK.
+     */
+    private void warnAboutUnmatchableRules() {
+        ComponentMask mask = getIdentityMask();
+        int count = 0;
+        ItemIdentifier example = null;
+        for (Set<ItemIdentifier> rules : List.of(forbiddenItems, allowedItems)) {
+            for (ItemIdentifier rule : rules) {
+                if (rule.storesComponentsOutside(mask)) {
+                    count++;
+                    if (example == null) {
+                        example = rule;
                     }
-                } else {
-                    LOGGER.warn("WORLDCONFIG: Loaded null items set from file: {}", configFile.getAbsolutePath());
                 }
-            } catch (Exception e) {
-                LOGGER.error("WORLDCONFIG: Error loading config for world: " + worldId, e);
             }
         }
+        if (count > 0) {
+            LOGGER.warn("WORLDCONFIG: {} exact rule(s) in {} store components that are not in the identity mask, "
+                    + "so they no longer match any item (for example {}). Add those components back to "
+                    + "identityComponents, or toggle the items again to create rules for the current mask.",
+                    count, configFile.getAbsolutePath(), example);
+        }
+    }
+
+    /**
+     * Rebuilds the merged snapshot for this layer and publishes it by reference swap.
+     * A change to the global layer republishes every loaded world as well.
+     * Must be called while holding CONFIG_LOCK.
+     */
+    private void publishSnapshot() {
+        rulesVersion++;
+        if (isGlobal) {
+            effectiveForbidden = Set.copyOf(forbiddenItems);
+            matcher = RuleMatcher.build(effectiveForbidden);
+            if (!detached) {
+                for (WorldConfig config : WORLD_CONFIGS.values()) {
+                    config.publishMerged(this);
+                }
+            }
+            return;
+        }
+        publishMerged(globalLayer);
+    }
+
+    /**
+     * Publishes this world's snapshot merged with the given global layer.
+     * The global layer is passed in rather than looked up, because the global layer
+     * republishes the worlds while it is still being created.
+     */
+    private void publishMerged(WorldConfig global) {
+        Set<ItemIdentifier> merged = global != null ? new HashSet<>(global.forbiddenItems) : new HashSet<>();
+        merged.addAll(forbiddenItems);
+        merged.removeAll(allowedItems);
+        effectiveForbidden = Set.copyOf(merged);
+        matcher = RuleMatcher.build(effectiveForbidden);
     }
 
     private void save() {
@@ -296,70 +1047,260 @@ public class WorldConfig {
             LOGGER.debug("Not saving config for world {} as it is not dirty", worldId);
             return;
         }
+        flush();
+    }
 
-        synchronized (CONFIG_LOCK) {
-            try {
-                if (!configFile.getParentFile().exists()) {
-                    LOGGER.info("Creating parent directories for config file: {}", configFile.getAbsolutePath());
-                    configFile.getParentFile().mkdirs();
+    /**
+     * Applies a change to this layer in memory right away and queues it to be written
+     * by the {@link ConfigWriter} thread, so the caller never waits for a file lock.
+     * Must be called while holding CONFIG_LOCK.
+     */
+    private void submitChange(Change change) {
+        change.applyTo(this);
+        pendingChanges.add(change);
+        isDirty = true;
+        publishSnapshot();
+        ConfigWriter.scheduleFlush(this, 0);
+    }
+
+    /**
+     * Writes this layer's pending changes without losing edits made by other client
+     * instances: under an exclusive file lock the current file contents are merged in
+     * first, then the pending changes are applied again on top and the result written back.
+     * 
+     * The file lock is waited for without holding CONFIG_LOCK and only for a bounded time;
+     * if another instance keeps holding it, the write is retried later on the writer thread.
+     * On other failures the changes stay in memory and are retried on the next save.
+     */
+    void flush() {
+        if (!isDirty) {
+            return;
+        }
+        try {
+            if (!configFile.getParentFile().exists()) {
+                LOGGER.info("Creating parent directories for config file: {}", configFile.getAbsolutePath());
+                configFile.getParentFile().mkdirs();
+            }
+            try (FileChannel channel = FileChannel.open(configFile.toPath(),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+                FileLock lock = tryLock(channel, false, LOCK_TIMEOUT_MILLIS);
+                if (lock == null) {
+                    LOGGER.warn("WORLDCONFIG: {} is locked by another instance, retrying the save in {} ms",
+                            configFile.getAbsolutePath(), LOCK_RETRY_MILLIS);
+                    ConfigWriter.scheduleFlush(this, LOCK_RETRY_MILLIS);
+                    return;
                 }
-                
-                try (BufferedWriter writer = new BufferedWriter(new FileWriter(configFile, StandardCharsets.UTF_8))) {
-                    String json = GSON.toJson(forbiddenItems);
-                    writer.write(json);
-                    isDirty = false;
-                    LOGGER.info("Saved config for world {} with {} items to {}", worldId, forbiddenItems.size(), configFile.getAbsolutePath());
+                try (lock) {
+                    LayerData data = channel.size() > 0 ? parseLayer(readChannel(channel)) : null;
+                    synchronized (CONFIG_LOCK) {
+                        if (data != null && data.forbidden != null) {
+                            mergeDiskState(data);
+                        }
+                        pendingChanges.clear();
+                        publishSnapshot();
+                        writeChannel(channel);
+                        isDirty = false;
+                    }
                 }
-            } catch (Exception e) {
-                LOGGER.error("Error saving config for world: " + worldId, e);
+                LOGGER.info("Saved config for world {} with {} items to {}", worldId, forbiddenItems.size(), configFile.getAbsolutePath());
             }
+        } catch (Exception e) {
+            LOGGER.error("Error saving config for world: " + worldId, e);
         }
     }
 
-    public void toggleItem(ItemIdentifier itemIdentifier) {
-        if (itemIdentifier == null) {
-            LOGGER.warn("WORLDCONFIG: Attempted to toggle null item identifier");
-            return;
+    /**
+     * Flips whether the given stack is forbidden by this layer and queues the change to be saved.
+     * The change applies immediately; the file is written in the background.
+     * Every rule that currently matches the stack, whatever its match mode, is removed
+     * (or allowed back, for global rules on a world layer); if none matches, a new rule
+     * is added with the configured default match mode.
+     * 
+     * @param stack The held stack
+     * @return false if the stack could not be identified, true otherwise
+     */
+    public boolean toggleItem(ItemStack stack) {
+        if (stack == null || stack.isEmpty()) {
+            LOGGER.warn("WORLDCONFIG: Attempted to toggle an empty stack");
+            return false;
+        }
+        ItemProbe probe = new ItemProbe(stack, getIdentityMask());
+        ItemIdentifier newRule = ItemIdentifier.forStack(probe, ForbiddenBlocksConfig.get().getDefaultMatchMode());
+        if (newRule == null) {
+            LOGGER.warn("WORLDCONFIG: Could not identify stack to toggle: {}", stack);
+            return false;
         }
 
         try {
             synchronized (CONFIG_LOCK) {
                 LOGGER.info("WORLDCONFIG: Toggling item {} in world {} (config file: {})", 
-                          itemIdentifier, worldId, configFile.getAbsolutePath());
+                          newRule, worldId, configFile.getAbsolutePath());
                 
+                // Takes effect now; the writer thread merges other instances' edits and saves it
+                submitChange(toggleChange(probe, newRule));
+            }
+        } catch (Exception e) {
+            LOGGER.error("WORLDCONFIG: Error toggling item: " + newRule, e);
+        }
+        return true;
+    }
+
+    /**
+     * Removes an item from this layer's forbidden list and queues the change to be saved.
+     * On a world layer, a matching global rule still applies afterwards.
+     * 
+     * @param itemIdentifier The rule to remove
+     */
+    public void removeItem(ItemIdentifier itemIdentifier) {
+        if (itemIdentifier == null) {
+            return;
+        }
+        try {
+            synchronized (CONFIG_LOCK) {
                 if (forbiddenItems.contains(itemIdentifier)) {
-                    forbiddenItems.remove(itemIdentifier);
-                    LOGGER.info("WORLDCONFIG: Removed {} from forbidden items", itemIdentifier);
-                } else {
-                    forbiddenItems.add(itemIdentifier);
-                    LOGGER.info("WORLDCONFIG: Added {} to forbidden items", itemIdentifier);
+                    LOGGER.info("WORLDCONFIG: Removed {} from forbidden items of {}", itemIdentifier, worldId);
                 }
-                isDirty = true;
-                
-                // Force immediate save to ensure persistence
-                LOGGER.info("WORLDCONFIG: Triggering immediate save after toggle");
-                save();
-                
-                // Verify save worked by checking file exists
-                if (configFile.exists()) {
-                    LOGGER.info("WORLDCONFIG: Config file exists after save: {}, size: {} bytes", 
-                              configFile.getAbsolutePath(), configFile.length());
+                Change change = new Change();
+                change.removeForbidden.add(itemIdentifier);
+                submitChange(change);
+            }
+        } catch (Exception e) {
+            LOGGER.error("WORLDCONFIG: Error removing item: " + itemIdentifier, e);
+        }
+    }
+
+    /**
+     * Gets a read-only view of the items this layer forbids, not including other layers.
+     * 
+     * @return The layer's forbidden items
+     */
+    public Set<ItemIdentifier> getForbiddenItems() {
+        return Collections.unmodifiableSet(forbiddenItems);
+    }
+
+    /**
+     * Gets the ID of the world or server this layer belongs to ("global" for the global layer).
+     * 
+     * @return The world ID
+     */
+    public String getWorldId() {
+        return worldId;
+    }
+
+    /**
+     * Works out the change that flips the effective state of the probed stack, touching
+     * the world layer only as far as needed.
+     * Must be called while holding CONFIG_LOCK.
+     */
+    private Change toggleChange(ItemProbe probe, ItemIdentifier newRule) {
+        Change change = new Change();
+        List<ItemIdentifier> matching = matchingRules(effectiveForbidden, probe);
+        if (!matching.isEmpty()) {
+            for (ItemIdentifier rule : matching) {
+                change.removeForbidden.add(rule);
+                if (!isGlobal && getGlobal().forbiddenItems.contains(rule)) {
+                    change.addAllowed.add(rule);
+                    LOGGER.info("WORLDCONFIG: Allowed globally forbidden item {} in world {}", rule, worldId);
                 } else {
-                    LOGGER.error("WORLDCONFIG: Config file does not exist after save attempt: {}", 
-                               configFile.getAbsolutePath());
+                    LOGGER.info("WORLDCONFIG: Removed {} from forbidden items", rule);
                 }
             }
-        } catch (Exception e) {
-            LOGGER.error("WORLDCONFIG: Error toggling item: " + itemIdentifier, e);
+            return change;
+        }
+        List<ItemIdentifier> allowed = matchingRules(allowedItems, probe);
+        if (!allowed.isEmpty()) {
+            change.removeAllowed.addAll(allowed);
+            LOGGER.info("WORLDCONFIG: Removed {} from allowed items, global rule applies again", allowed);
+            return change;
         }
+        change.addForbidden.add(newRule);
+        LOGGER.info("WORLDCONFIG: Added {} to forbidden items", newRule);
+        return change;
     }
 
-    public boolean isItemForbidden(ItemIdentifier itemIdentifier) {
-        if (itemIdentifier == null) {
-            return false;
+    private static List<ItemIdentifier> matchingRules(Set<ItemIdentifier> rules, ItemProbe probe) {
+        List<ItemIdentifier> matching = new ArrayList<>();
+        for (ItemIdentifier rule : rules) {
+            if (rule.matches(probe)) {
+                matching.add(rule);
+            }
         }
-        boolean forbidden = forbiddenItems.contains(itemIdentifier);
-        LOGGER.debug("Checking if item {} is forbidden: {}", itemIdentifier, forbidden);
-        return forbidden;
+        return matching;
+    }
+
+    /**
+     * Checks whether any effective rule could match the given item.
+     * This needs no identity and allocates nothing, so callers use it to skip
+     * unrelated stacks before doing any other work.
+     * 
+     * @param item The held item
+     * @return false if no rule applies to this item, true if a rule check is needed
+     */
+    public boolean mayForbid(Item item) {
+        return matcher.mayMatch(item);
+    }
+
+    /**
+     * Finds the effective rule that forbids the probed stack. The match mode indexes are
+     * probed from cheapest to most expensive, so the stack's name and component identity
+     * are only computed when a rule for its item needs them.
+     * 
+     * @param probe The stack being checked
+     * @return The matching rule, or null if the stack is allowed
+     */
+    public ItemIdentifier findRule(ItemProbe probe) {
+        return matcher.match(probe);
+    }
+
+    /**
+     * Checks whether the stack is forbidden, for one-off checks such as key presses.
+     * 
+     * @param stack The stack to check
+     * @return true if an effective rule forbids it
+     */
+    public boolean isForbidden(ItemStack stack) {
+        return stack != null && !stack.isEmpty() && matcher.match(new ItemProbe(stack, getIdentityMask())) != null;
+    }
+
+    /**
+     * Checks whether this world has any placement zones.
+     * 
+     * @return true if at least one zone is indexed
+     */
+    public boolean hasZones() {
+        return !zoneIndex.isEmpty();
+    }
+
+    /**
+     * Checks whether a zone at the given position forbids placing the stack there.
+     * 
+     * @param dimension The dimension ID of the world being interacted with
+     * @param pos The position the placed block would occupy, not the clicked block
+     * @param probe The held stack
+     * @return true if placement is forbidden at this position
+     */
+    public boolean isForbiddenInZone(Identifier dimension, BlockPos pos, ItemProbe probe) {
+        return zoneIndex.forbids(dimension, pos, probe);
+    }
+
+    /**
+     * Gets the component mask used to build item identities in this world.
+     * A world file may override the global mask with its own "identityComponents" list;
+     * note that global rules are then matched using the world's mask as well.
+     * 
+     * @return The world's mask, or the global mask when the world has no override
+     */
+    public ComponentMask getIdentityMask() {
+        ComponentMask mask = identityMask;
+        return mask != null ? mask : ForbiddenBlocksConfig.get().getIdentityMask();
+    }
+
+    /**
+     * Checks whether this layer is the global layer shared by all worlds.
+     * 
+     * @return true for the global layer, false for a per-world layer
+     */
+    public boolean isGlobal() {
+        return isGlobal;
     }
 }
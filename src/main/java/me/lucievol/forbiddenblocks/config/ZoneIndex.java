@@ -0,0 +1,161 @@
+package me.lucievol.forbiddenblocks.config;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.item.BlockItem;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable spatial index of {@link ForbidZone}s for one world.
+ * 
+ * Each zone is registered under every chunk column it overlaps, keyed by the packed
+ * chunk position, so a lookup touches one hash bucket and only the zones near the
+ * queried block, however many zones the world has. Zones spanning more than
+ * {@link #MAX_INDEXED_CHUNKS} chunks are kept in a small per-dimension list instead
+ * of being copied into thousands of buckets.
+ */
+public final class ZoneIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger("forbiddenblocks");
+    private static final int MAX_INDEXED_CHUNKS = 1024;
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    public static final ZoneIndex EMPTY = new ZoneIndex(Map.of(), Map.of());
+
+    /**
+     * A resolved zone: integer bounds plus the items it forbids.
+     */
+    private static final class Entry {
+        private final int minX, minY, minZ, maxX, maxY, maxZ;
+        // Empty means any block item is forbidden
+        private final RuleMatcher items;
+
+        private Entry(ForbidZone zone) {
+            this.minX = zone.getMinX();
+            this.minY = zone.getMinY();
+            this.minZ = zone.getMinZ();
+            this.maxX = zone.getMaxX();
+            this.maxY = zone.getMaxY();
+            this.maxZ = zone.getMaxZ();
+            Set<WorldConfig.ItemIdentifier> resolved = new HashSet<>();
+            for (WorldConfig.ItemIdentifier item : zone.getItems()) {
+                resolved.add(item.intern());
+            }
+            this.items = RuleMatcher.build(resolved);
+        }
+
+        private boolean contains(BlockPos pos) {
+            int x = pos.getX(), y = pos.getY(), z = pos.getZ();
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+        }
+
+        private boolean forbids(ItemProbe probe) {
+            if (items.isEmpty()) {
+                return probe.getItem() instanceof BlockItem;
+            }
+            return items.match(probe) != null;
+        }
+    }
+
+    private final Map<Identifier, Long2ObjectOpenHashMap<Entry[]>> chunkIndex;
+    private final Map<Identifier, Entry[]> largeZones;
+
+    private ZoneIndex(Map<Identifier, Long2ObjectOpenHashMap<Entry[]>> chunkIndex, Map<Identifier, Entry[]> largeZones) {
+        this.chunkIndex = chunkIndex;
+        this.largeZones = largeZones;
+    }
+
+    /**
+     * Builds an index from a world's zone list. Invalid zones are logged and skipped.
+     * 
+     * @param zones The zones to index, may be null
+     * @return The index, never null
+     */
+    public static ZoneIndex build(List<ForbidZone> zones) {
+        if (zones == null || zones.isEmpty()) {
+            return EMPTY;
+        }
+        Map<Identifier, Map<Long, List<Entry>>> buckets = new HashMap<>();
+        Map<Identifier, List<Entry>> large = new HashMap<>();
+        for (ForbidZone zone : zones) {
+            Identifier dimension = zone != null && zone.isValid() ? Identifier.tryParse(zone.getDimension()) : null;
+            if (dimension == null) {
+                LOGGER.warn("WORLDCONFIG: Skipping invalid zone {}", zone);
+                continue;
+            }
+            Entry entry = new Entry(zone);
+            int minChunkX = entry.minX >> 4, maxChunkX = entry.maxX >> 4;
+            int minChunkZ = entry.minZ >> 4, maxChunkZ = entry.maxZ >> 4;
+            long chunkCount = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+            if (chunkCount > MAX_INDEXED_CHUNKS) {
+                large.computeIfAbsent(dimension, key -> new ArrayList<>()).add(entry);
+                continue;
+            }
+            Map<Long, List<Entry>> dimensionBuckets = buckets.computeIfAbsent(dimension, key -> new HashMap<>());
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    dimensionBuckets.computeIfAbsent(ChunkPos.toLong(chunkX, chunkZ), key -> new ArrayList<>()).add(entry);
+                }
+            }
+        }
+
+        Map<Identifier, Long2ObjectOpenHashMap<Entry[]>> chunkIndex = new HashMap<>();
+        buckets.forEach((dimension, dimensionBuckets) -> {
+            Long2ObjectOpenHashMap<Entry[]> packed = new Long2ObjectOpenHashMap<>(dimensionBuckets.size());
+            dimensionBuckets.forEach((chunk, entries) -> packed.put((long) chunk, entries.toArray(NO_ENTRIES)));
+            chunkIndex.put(dimension, packed);
+        });
+        Map<Identifier, Entry[]> largeZones = new HashMap<>();
+        large.forEach((dimension, entries) -> largeZones.put(dimension, entries.toArray(NO_ENTRIES)));
+        LOGGER.info("WORLDCONFIG: Indexed {} zones ({} spanning over {} chunks)", zones.size(),
+                large.values().stream().mapToInt(List::size).sum(), MAX_INDEXED_CHUNKS);
+        return new ZoneIndex(Map.copyOf(chunkIndex), Map.copyOf(largeZones));
+    }
+
+    /**
+     * Checks whether the index holds no zones at all.
+     * 
+     * @return true if there are no zones
+     */
+    public boolean isEmpty() {
+        return chunkIndex.isEmpty() && largeZones.isEmpty();
+    }
+
+    /**
+     * Checks whether any zone containing the position forbids placing the stack.
+     * 
+     * @param dimension The dimension ID of the world being interacted with
+     * @param pos The position the placed block would occupy
+     * @param probe The held stack
+     * @return true if placement is forbidden here
+     */
+    public boolean forbids(Identifier dimension, BlockPos pos, ItemProbe probe) {
+        Long2ObjectOpenHashMap<Entry[]> dimensionIndex = chunkIndex.get(dimension);
+        if (dimensionIndex != null) {
+            Entry[] entries = dimensionIndex.get(ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4));
+            if (entries != null && forbidsAny(entries, pos, probe)) {
+                return true;
+            }
+        }
+        Entry[] large = largeZones.get(dimension);
+        return large != null && forbidsAny(large, pos, probe);
+    }
+
+    private static boolean forbidsAny(Entry[] entries, BlockPos pos, ItemProbe probe) {
+        for (Entry entry : entries) {
+            if (entry.contains(pos) && entry.forbids(probe)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,29 @@
+package me.lucievol.forbiddenblocks.mixin;
+
+import me.lucievol.forbiddenblocks.InteractionPipeline;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.client.network.ClientPlayerInteractionManager;
+import net.minecraft.util.ActionResult;
+import net.minecraft.util.Hand;
+import net.minecraft.util.hit.BlockHitResult;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * Runs the forbid decision at the very start of the client's block interaction,
+ * ahead of other mods' UseBlockCallback listeners and before any packet is built.
+ * A forbidden placement is cancelled with FAIL, which also suppresses the hand swing.
+ * The Fabric callback registered by {@link InteractionPipeline} stays as a fallback.
+ */
+@Mixin(ClientPlayerInteractionManager.class)
+public class ClientPlayerInteractionManagerMixin {
+	@Inject(at = @At("HEAD"), method = "interactBlock", cancellable = true)
+	private void forbiddenblocks$interceptBlockUse(ClientPlayerEntity player, Hand hand, BlockHitResult hitResult,
+			CallbackInfoReturnable<ActionResult> cir) {
+		if (InteractionPipeline.interceptBlockUse(player, hand, hitResult) == ActionResult.FAIL) {
+			cir.setReturnValue(ActionResult.FAIL);
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package me.lucievol.forbiddenblocks;
+
+import me.lucievol.forbiddenblocks.config.TestConfig;
+import me.lucievol.forbiddenblocks.config.WorldConfig;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Allocation budgets for the decision made on every interaction.
+ *
+ * Deciding an allowed stack is meant to allocate nothing: an item no rule mentions is
+ * rejected before anything else is computed, and a ruled item is decided once per tick and
+ * then answered from the per-hand cache. Each case is warmed up, then run many times while
+ * the thread's allocated byte counter is read before and after; the test fails when the
+ * whole run allocates more than a small fixed budget, which is far below one object per call.
+ *
+ * The END_CLIENT_TICK listener needs a player in game to run its full path, so its budget
+ * is checked by the TickAllocationGameTest client game test instead.
+ */
+class AllocationBudgetTest {
+    private static final int WARMUP_CALLS = 20_000;
+    private static final int MEASURED_CALLS = 100_000;
+    // For the whole measured run; leaves room for counter noise but not for one allocation per call
+    private static final long BUDGET_BYTES = 4096;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    @TempDir
+    static Path configDir;
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+        // The pipeline reads the mod config; keep its file out of the working directory
+        TestConfig.useDirectory(configDir);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "JVM cannot measure thread allocations");
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    void evaluatingAnUnruledItemStaysWithinBudget(@TempDir Path dir) throws IOException {
+        WorldConfig world = createWorld(dir);
+        InteractionPipeline.Evaluation evaluation = new InteractionPipeline.Evaluation();
+        ItemStack stack = new ItemStack(Items.STONE, 64);
+
+        assertFalse(InteractionPipeline.evaluate(evaluation, stack, world).isForbidden());
+        assertWithinBudget("InteractionPipeline.evaluate, item no rule mentions", () -> {
+            // A new tick each call, so the decision is computed rather than taken from the cache
+            InteractionPipeline.onTick();
+            InteractionPipeline.evaluate(evaluation, stack, world);
+        });
+    }
+
+    @Test
+    void evaluatingAnAllowedRuledItemWithinOneTickStaysWithinBudget(@TempDir Path dir) throws IOException {
+        WorldConfig world = createWorld(dir);
+        InteractionPipeline.Evaluation evaluation = new InteractionPipeline.Evaluation();
+        // A diamond sword not named Excalibur: the name rule has to be checked, and does not match
+        ItemStack stack = new ItemStack(Items.DIAMOND_SWORD);
+
+        InteractionPipeline.onTick();
+        assertFalse(InteractionPipeline.evaluate(evaluation, stack, world).isForbidden());
+        assertWithinBudget("InteractionPipeline.evaluate, allowed ruled item, same tick", () -> {
+            // Every hook that fires for a click in this tick asks again; all but the first hit the cache
+            InteractionPipeline.evaluate(evaluation, stack, world);
+        });
+    }
+
+    /**
+     * Creates a world with rules for torches and for a named diamond sword, so checks run
+     * against a non-empty matcher.
+     */
+    private static WorldConfig createWorld(Path dir) throws IOException {
+        Path rules = dir.resolve("rules.json");
+        Files.writeString(rules, """
+                {"forbidden": [
+                  {"registryId": "minecraft:torch", "match": "registry"},
+                  {"registryId": "minecraft:diamond_sword", "name": "Excalibur", "match": "name"}
+                ]}""");
+        return WorldConfig.createDetached("allocation-test", rules.toFile());
+    }
+
+    private static void assertWithinBudget(String label, Runnable call) {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            call.run();
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            call.run();
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        System.out.printf("%s: %d bytes over %d calls (budget %d)%n", label, allocated, MEASURED_CALLS, BUDGET_BYTES);
+        assertTrue(allocated <= BUDGET_BYTES, () -> label + " allocated " + allocated + " bytes over "
+                + MEASURED_CALLS + " calls, budget is " + BUDGET_BYTES);
+    }
+}
@@ -0,0 +1,152 @@
+package me.lucievol.forbiddenblocks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.mojang.serialization.DynamicOps;
+import com.mojang.serialization.JsonOps;
+import me.lucievol.forbiddenblocks.config.ComponentMask;
+import me.lucievol.forbiddenblocks.config.WorldConfig;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.component.ComponentType;
+import net.minecraft.component.DataComponentTypes;
+import net.minecraft.component.type.LoreComponent;
+import net.minecraft.enchantment.Enchantment;
+import net.minecraft.enchantment.Enchantments;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.registry.BuiltinRegistries;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.registry.RegistryWrapper;
+import net.minecraft.registry.entry.RegistryEntry;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Times building an exact identity for an enchanted, named item with lore, comparing the
+ * codec encoding used by {@link ItemIdentifierFactory} against the reflective Gson encoding
+ * it replaced.
+ *
+ * Both encoders read the same components, those of the default identity mask, so the
+ * comparison isolates codec against reflection and leaves out the saving from reading fewer
+ * components. Each encoder is warmed up, then timed over several rounds; the best round
+ * counts, which keeps the comparison stable on a busy machine. The codec has to be at least
+ * MIN_SPEEDUP times faster. Run with {@code gradlew test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class IdentityEncodingBenchmark {
+    private static final int WARMUP_CALLS = 5_000;
+    private static final int ROUNDS = 5;
+    private static final int CALLS_PER_ROUND = 10_000;
+    // "Several times cheaper" than reflection
+    private static final double MIN_SPEEDUP = 2.0;
+    // The encoder the factory replaced, configured as it was
+    private static final Gson REFLECTIVE_GSON = new GsonBuilder().create();
+
+    private static DynamicOps<JsonElement> ops;
+    private static ItemStack stack;
+    // Keeps results reachable so the JIT cannot drop the calls being timed
+    private static volatile Object sink;
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+        // Enchantments live in a dynamic registry; the built-in lookup stands in for a world's registries
+        RegistryWrapper.WrapperLookup registries = BuiltinRegistries.createWrapperLookup();
+        ops = registries.getOps(JsonOps.INSTANCE);
+        RegistryWrapper.Impl<Enchantment> enchantments = registries.getOrThrow(RegistryKeys.ENCHANTMENT);
+
+        stack = new ItemStack(Items.DIAMOND_SWORD);
+        stack.set(DataComponentTypes.CUSTOM_NAME, Text.literal("Excalibur").formatted(Formatting.GOLD));
+        stack.set(DataComponentTypes.LORE, new LoreComponent(List.of(
+                Text.literal("Pulled from the stone"), Text.literal("Do not place").formatted(Formatting.RED))));
+        stack.addEnchantment(enchantments.getOrThrow(Enchantments.SHARPNESS), 5);
+        stack.addEnchantment(enchantments.getOrThrow(Enchantments.UNBREAKING), 3);
+        stack.addEnchantment(enchantments.getOrThrow(Enchantments.MENDING), 1);
+    }
+
+    @Test
+    void codecEncodingIsCheaperThanReflectiveGson() {
+        ComponentMask mask = ComponentMask.resolve(ComponentMask.DEFAULT_COMPONENTS);
+        WorldConfig.ItemIdentifier identity = ItemIdentifierFactory.create(stack, mask, ops);
+        assertNotNull(identity);
+        assertTrue(identity.getComponentsJson().contains("minecraft:sharpness"),
+                () -> "enchantments missing from " + identity.getComponentsJson());
+
+        double codecNanos = nanosPerCall(() -> ItemIdentifierFactory.create(stack, mask, ops));
+        double reflectiveNanos = nanosPerCall(() -> createReflective(mask));
+        double speedup = reflectiveNanos / codecNanos;
+        System.out.printf(Locale.ROOT, "Identity of an enchanted, named item with lore over %d mask components: "
+                + "codec %.0f ns, reflective Gson %.0f ns (%.1fx)%n", mask.size(), codecNanos, reflectiveNanos, speedup);
+        assertTrue(speedup >= MIN_SPEEDUP, () -> String.format(Locale.ROOT,
+                "codec encoding took %.0f ns, reflective Gson %.0f ns: %.1fx, expected at least %.1fx",
+                codecNanos, reflectiveNanos, speedup, MIN_SPEEDUP));
+    }
+
+    private static double nanosPerCall(Supplier<Object> call) {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            sink = call.get();
+        }
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLS_PER_ROUND; i++) {
+                sink = call.get();
+            }
+            best = Math.min(best, (System.nanoTime() - start) / (double) CALLS_PER_ROUND);
+        }
+        return best;
+    }
+
+    /**
+     * The reflective encoding the factory replaced, restricted to the mask's components:
+     * each one present on the stack is serialized by reflection.
+     */
+    private static WorldConfig.ItemIdentifier createReflective(ComponentMask mask) {
+        String registryId = Registries.ITEM.getId(stack.getItem()).toString();
+        String displayName = stack.getName().getString();
+        Map<String, JsonElement> components = new TreeMap<>();
+        for (int i = 0; i < mask.size(); i++) {
+            ComponentType<?> type = mask.getType(i);
+            if (!stack.contains(type)) {
+                continue;
+            }
+            String typeId = mask.getId(i);
+            Object value = stack.get(type);
+            if (value instanceof Optional<?> optional) {
+                value = optional.orElse(null);
+            }
+            if (value instanceof RegistryEntry<?> entry) {
+                Object fallback = value;
+                value = entry.getKey().map(key -> key.getValue().toString()).orElseGet(fallback::toString);
+            }
+            if (value == null) {
+                components.put(typeId, JsonNull.INSTANCE);
+                continue;
+            }
+            try {
+                components.put(typeId, REFLECTIVE_GSON.toJsonTree(value));
+            } catch (RuntimeException | StackOverflowError e) {
+                // Some component classes cannot be reflected; the old encoder logged and skipped them
+            }
+        }
+        return new WorldConfig.ItemIdentifier(registryId, displayName, REFLECTIVE_GSON.toJson(components));
+    }
+}
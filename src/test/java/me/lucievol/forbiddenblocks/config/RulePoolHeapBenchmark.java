@@ -0,0 +1,164 @@
+package me.lucievol.forbiddenblocks.config;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the heap retained by rules loaded from many world files that share most of
+ * their rules, with and without the identifier pool.
+ *
+ * The same files are first kept as parsed by Gson, one object per rule per file, which is
+ * what layers held before identifiers were interned; then loaded through WorldConfig, which
+ * interns them. Live instances are counted with a class histogram taken after a full GC.
+ * Run with {@code gradlew test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class RulePoolHeapBenchmark {
+    private static final int WORLDS = 200;
+    private static final int SHARED_RULES = 50;
+    private static final int RULES_PER_WORLD = 5;
+    private static final String IDENTIFIER_CLASS = WorldConfig.ItemIdentifier.class.getName();
+    private static final String STRING_CLASS = String.class.getName();
+    // "   1:   12345   678901  java.lang.String (java.base@21)"
+    private static final Pattern HISTOGRAM_LINE = Pattern.compile("^\\s*\\d+:\\s+(\\d+)\\s+(\\d+)\\s+(\\S+)");
+    private static final Gson GSON = new Gson();
+
+    private static final class ParsedLayer {
+        private HashSet<WorldConfig.ItemIdentifier> forbidden;
+    }
+
+    @TempDir
+    static Path configDir;
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+        // Loading checks exact rules against the mod config's mask; keep its file out of the working directory
+        TestConfig.useDirectory(configDir);
+    }
+
+    @Test
+    void pooledRulesRetainLessHeap(@TempDir Path dir) throws Exception {
+        List<Path> files = writeWorldFiles(dir);
+
+        Map<String, long[]> before = histogram();
+        List<ParsedLayer> parsed = new ArrayList<>();
+        for (Path file : files) {
+            parsed.add(GSON.fromJson(Files.readString(file), ParsedLayer.class));
+        }
+        Map<String, long[]> withParsed = histogram();
+        long[] parsedIdentifiers = delta(before, withParsed, IDENTIFIER_CLASS);
+        long[] parsedStrings = delta(before, withParsed, STRING_CLASS);
+        // Keeps the parsed layers alive through the histogram that counts them
+        Reference.reachabilityFence(parsed);
+        parsed = null;
+
+        before = histogram();
+        List<WorldConfig> layers = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            layers.add(WorldConfig.createDetached("heap-" + i, files.get(i).toFile()));
+        }
+        Map<String, long[]> withPooled = histogram();
+        long[] pooledIdentifiers = delta(before, withPooled, IDENTIFIER_CLASS);
+        long[] pooledStrings = delta(before, withPooled, STRING_CLASS);
+        Reference.reachabilityFence(layers);
+
+        System.out.printf(Locale.ROOT, "%d worlds, %d shared + %d own rules each%n", WORLDS, SHARED_RULES, RULES_PER_WORLD);
+        System.out.printf(Locale.ROOT, "  as parsed: %d identifiers (%d B), %d strings (%d B)%n",
+                parsedIdentifiers[0], parsedIdentifiers[1], parsedStrings[0], parsedStrings[1]);
+        System.out.printf(Locale.ROOT, "  pooled:    %d identifiers (%d B), %d strings (%d B)%n",
+                pooledIdentifiers[0], pooledIdentifiers[1], pooledStrings[0], pooledStrings[1]);
+
+        long distinctRules = SHARED_RULES + (long) WORLDS * RULES_PER_WORLD;
+        assertTrue(parsedIdentifiers[0] >= (long) WORLDS * (SHARED_RULES + RULES_PER_WORLD),
+                () -> "expected one parsed identifier per rule per file, found " + parsedIdentifiers[0]);
+        assertTrue(pooledIdentifiers[0] <= distinctRules,
+                () -> "expected at most " + distinctRules + " pooled identifiers, found " + pooledIdentifiers[0]);
+        assertTrue(pooledIdentifiers[1] + pooledStrings[1] < parsedIdentifiers[1] + parsedStrings[1],
+                "pooled rules should retain fewer bytes than parsed ones");
+    }
+
+    private static List<Path> writeWorldFiles(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (int world = 0; world < WORLDS; world++) {
+            JsonArray forbidden = new JsonArray();
+            for (int rule = 0; rule < SHARED_RULES; rule++) {
+                forbidden.add(exactRule("Heirloom " + rule));
+            }
+            for (int rule = 0; rule < RULES_PER_WORLD; rule++) {
+                forbidden.add(exactRule("World " + world + " keepsake " + rule));
+            }
+            JsonObject layer = new JsonObject();
+            layer.add("forbidden", forbidden);
+            Path file = dir.resolve("world_" + world + ".json");
+            Files.writeString(file, GSON.toJson(layer));
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static JsonObject exactRule(String name) {
+        JsonArray lore = new JsonArray();
+        lore.add("Handed down through the family");
+        lore.add("Never to be placed");
+        JsonObject components = new JsonObject();
+        components.addProperty("minecraft:custom_name", name);
+        components.add("minecraft:lore", lore);
+        JsonObject rule = new JsonObject();
+        rule.addProperty("registryId", "minecraft:player_head");
+        rule.addProperty("name", name);
+        rule.addProperty("componentsJson", components.toString());
+        return rule;
+    }
+
+    /**
+     * Takes a class histogram of live objects; the diagnostic command runs a full GC first.
+     *
+     * @return Instance count and bytes by class name
+     */
+    private static Map<String, long[]> histogram() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String text = (String) server.invoke(new ObjectName("com.sun.management:type=DiagnosticCommand"),
+                "gcClassHistogram", new Object[]{new String[0]}, new String[]{String[].class.getName()});
+        Map<String, long[]> counts = new HashMap<>();
+        for (String line : text.split("\n")) {
+            Matcher matcher = HISTOGRAM_LINE.matcher(line);
+            if (matcher.find()) {
+                counts.put(matcher.group(3), new long[]{Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))});
+            }
+        }
+        return counts;
+    }
+
+    private static long[] delta(Map<String, long[]> before, Map<String, long[]> after, String className) {
+        long[] from = before.getOrDefault(className, new long[2]);
+        long[] to = after.getOrDefault(className, new long[2]);
+        return new long[]{to[0] - from[0], to[1] - from[1]};
+    }
+}
@@ -0,0 +1,60 @@
+package me.lucievol.forbiddenblocks.config;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import me.shedaniel.autoconfig.serializer.ConfigSerializer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Registers the mod config for tests, with its file in a test's temporary directory
+ * instead of the working directory.
+ *
+ * The config system can only be registered once per JVM, so the first test class to
+ * call {@link #useDirectory} decides the directory; later calls are ignored. Tests only
+ * read the config, so nothing is written after that directory is cleaned up.
+ */
+public final class TestConfig {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private TestConfig() {
+    }
+
+    /**
+     * Registers the config system with its file in the given directory.
+     *
+     * @param directory A temporary directory, usually a static {@code @TempDir}
+     */
+    public static void useDirectory(Path directory) {
+        Path file = directory.resolve("forbiddenblocks.json");
+        ForbiddenBlocksConfig.init((definition, configClass) -> new ConfigSerializer<>() {
+            @Override
+            public void serialize(ForbiddenBlocksConfig config) throws SerializationException {
+                try {
+                    Files.writeString(file, GSON.toJson(config));
+                } catch (IOException e) {
+                    throw new SerializationException(e);
+                }
+            }
+
+            @Override
+            public ForbiddenBlocksConfig deserialize() throws SerializationException {
+                if (!Files.exists(file)) {
+                    return createDefault();
+                }
+                try {
+                    return GSON.fromJson(Files.readString(file), ForbiddenBlocksConfig.class);
+                } catch (IOException e) {
+                    throw new SerializationException(e);
+                }
+            }
+
+            @Override
+            public ForbiddenBlocksConfig createDefault() {
+                return new ForbiddenBlocksConfig();
+            }
+        });
+    }
+}